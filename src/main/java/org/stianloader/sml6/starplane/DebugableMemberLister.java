@@ -3,8 +3,10 @@ package org.stianloader.sml6.starplane;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -16,12 +18,86 @@ import org.stianloader.remapper.MemberRef;
 import org.stianloader.remapper.SimpleTopLevelLookup;
 
 public class DebugableMemberLister implements MemberLister {
+    /**
+     * The members of a library class, indexed by name and by name and descriptor. All collections are immutable
+     * and list the methods of the class before the fields, in the order in which they are declared. They are never
+     * handed out as-is, as callers of {@link MemberLister} may modify the returned collections.
+     */
+    private static final class MemberTable {
+        @NotNull
+        private final Map<String, List<MemberRef>> byDesc = new HashMap<>();
+        @NotNull
+        private final Map<String, List<MemberRef>> byName = new HashMap<>();
+        @NotNull
+        private final Map<String, Map<String, List<MemberRef>>> byNameAndDesc = new HashMap<>();
+        @NotNull
+        private final List<MemberRef> members;
+        /**
+         * The node the table was built from, used to detect whether the node of the owner was replaced.
+         */
+        @NotNull
+        private final ClassNode node;
+
+        private MemberTable(@NotNull String owner, @NotNull ClassNode node) {
+            this.node = node;
+            List<MemberRef> members = new ArrayList<>(node.methods.size() + node.fields.size());
+            for (MethodNode method : node.methods) {
+                members.add(new MemberRef(owner, method.name, method.desc));
+            }
+            for (FieldNode field : node.fields) {
+                members.add(new MemberRef(owner, field.name, field.desc));
+            }
+            this.members = Collections.unmodifiableList(members);
+
+            for (MemberRef member : members) {
+                this.byDesc.computeIfAbsent(member.getDesc(), desc -> new ArrayList<>()).add(member);
+                this.byName.computeIfAbsent(member.getName(), name -> new ArrayList<>()).add(member);
+                this.byNameAndDesc.computeIfAbsent(member.getName(), name -> new HashMap<>())
+                    .computeIfAbsent(member.getDesc(), desc -> new ArrayList<>()).add(member);
+            }
+            this.byDesc.replaceAll((desc, list) -> Collections.unmodifiableList(list));
+            this.byName.replaceAll((name, list) -> Collections.unmodifiableList(list));
+            for (Map<String, List<MemberRef>> descs : this.byNameAndDesc.values()) {
+                descs.replaceAll((desc, list) -> Collections.unmodifiableList(list));
+            }
+        }
+
+        @NotNull
+        private List<MemberRef> find(@Nullable String name, @Nullable String desc) {
+            List<MemberRef> found;
+            if (name == null) {
+                found = desc == null ? this.members : this.byDesc.get(desc);
+            } else if (desc == null) {
+                found = this.byName.get(name);
+            } else {
+                Map<String, List<MemberRef>> descs = this.byNameAndDesc.get(name);
+                found = descs == null ? null : descs.get(desc);
+            }
+            return found == null ? Collections.emptyList() : found;
+        }
+    }
+
     private boolean debugging = false;
     @NotNull
     private final Map<String, ClassNode> libraryNodes;
+    /**
+     * The member tables of the library classes that were queried so far, keyed by the internal name of the class.
+     */
+    @NotNull
+    private final Map<String, MemberTable> memberTables = new ConcurrentHashMap<>();
     @NotNull
     private final SimpleTopLevelLookup topTevelLookup;
 
+    /**
+     * Constructor.
+     *
+     * <p>The members of every library class are indexed the first time the class is queried. Afterwards, the members of that
+     * {@link ClassNode} must not be added, removed or renamed anymore, as such changes would not be reflected by this lister.
+     * Replacing the node of a class within the map is supported and causes the members of the class to be indexed anew.
+     *
+     * @param topLevelLookup The lookup used to check whether a member exists in the hierarchy of a class
+     * @param libraryNodes The library classes, keyed by their internal name. The members of the nodes must not change once queried.
+     */
     public DebugableMemberLister(@NotNull SimpleTopLevelLookup topLevelLookup, @NotNull Map<String, ClassNode> libraryNodes) {
         this.topTevelLookup = topLevelLookup;
         this.libraryNodes = libraryNodes;
@@ -30,19 +106,30 @@ public class DebugableMemberLister implements MemberLister {
     @Override
     @Nullable
     public Collection<MemberRef> getReportedClassMembers(@NotNull String owner) {
+        MemberTable table = this.getMemberTable(owner);
+        // A copy of the shared member list, as callers may modify the returned collection
+        return table == null ? null : new ArrayList<>(table.members);
+    }
+
+    /**
+     * Obtains the member table of a library class, building it if the class was not queried before.
+     * The members of a library class may not change once its table is built.
+     *
+     * @param owner The internal name of the class
+     * @return The member table, or null if the class is not a library class
+     */
+    @Nullable
+    private MemberTable getMemberTable(@NotNull String owner) {
         ClassNode node = this.libraryNodes.get(owner);
         if (node == null) {
             return null;
         }
-
-        List<MemberRef> collected = new ArrayList<>();
-        for (MethodNode method : node.methods) {
-            collected.add(new MemberRef(owner, method.name, method.desc));
+        MemberTable table = this.memberTables.get(owner);
+        if (table == null || table.node != node) {
+            table = new MemberTable(owner, node);
+            this.memberTables.put(owner, table);
         }
-        for (FieldNode field : node.fields) {
-            collected.add(new MemberRef(owner, field.name, field.desc));
-        }
-        return collected;
+        return table;
     }
 
     @Override
@@ -60,29 +147,10 @@ public class DebugableMemberLister implements MemberLister {
     @Override
     @NotNull
     public Collection<MemberRef> tryInferMember(@NotNull String owner, @Nullable String name, @Nullable String desc) {
-        ClassNode node = this.libraryNodes.get(owner);
-        if (node == null) {
+        MemberTable table = this.getMemberTable(owner);
+        if (table == null) {
             return Collections.emptySet();
         }
-        List<MemberRef> collected = new ArrayList<>();
-        for (MethodNode method : node.methods) {
-            if (name != null && !name.equals(method.name)) {
-                continue;
-            }
-            if (desc != null && !desc.equals(method.desc)) {
-                continue;
-            }
-            collected.add(new MemberRef(owner, method.name, method.desc));
-        }
-        for (FieldNode field : node.fields) {
-            if (name != null && !name.equals(field.name)) {
-                continue;
-            }
-            if (desc != null && !desc.equals(field.desc)) {
-                continue;
-            }
-            collected.add(new MemberRef(owner, field.name, field.desc));
-        }
-        return collected;
+        return new ArrayList<>(table.find(name, desc));
     }
 }
@@ -0,0 +1,369 @@
+package org.stianloader.sml6.starplane;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.tree.ClassNode;
+
+import de.geolykt.starloader.deobf.Oaktree;
+
+/**
+ * A persistent cache for the results of the sl-deobf stages of the deobfuscation pipeline.
+ *
+ * <p>Each cache entry is a directory named after a key derived from the SHA-256 hash of the input jar,
+ * the configuration of the stages and the code of this plugin and of sl-deobf. It stores the class nodes as they were after the sl-deobf stages (in their original order)
+ * as well as the generated sl-intermediary mappings, if any. Entries are written to a temporary directory first and then
+ * moved into place. A marker file is written last and entries without it are never restored, so that concurrent builds never
+ * observe partially written entries. Existing entries are moved out of the way before they are deleted, rather than
+ * being deleted in place.
+ *
+ * <p>As every new input jar or version of this plugin or of sl-deobf results in a new entry, entries which have not been
+ * restored or stored for 30 days are evicted whenever an entry is stored.
+ */
+public final class DeobfuscationStageCache {
+
+    /**
+     * Bumped whenever the layout of cache entries or the semantics of the cached stages change.
+     */
+    private static final int CACHE_FORMAT_VERSION = 2;
+
+    @NotNull
+    private static final String CLASSES_FILE = "classes.zip";
+
+    @NotNull
+    private static final String INTERMEDIARY_FILE = "slintermediary.tiny";
+
+    /**
+     * The marker file of complete entries, written last. Its contents state whether the entry has sl-intermediary mappings,
+     * its last modification time is the time the entry was last used.
+     */
+    @NotNull
+    private static final String MARKER_FILE = "complete";
+
+    /**
+     * The amount of days after which entries that were not used are evicted.
+     */
+    private static final int MAX_UNUSED_DAYS = 30;
+
+    /**
+     * The amount of hours after which leftover temporary directories of interrupted builds are deleted.
+     */
+    private static final int MAX_TEMPORARY_HOURS = 24;
+
+    /**
+     * The descriptions of the code the cached stages consist of, keyed by a class of that code.
+     */
+    @NotNull
+    private static final Map<Class<?>, String> CODE_SOURCES = new ConcurrentHashMap<>();
+
+    /**
+     * Computes the key of the cache entry for a given input jar and stage configuration.
+     *
+     * <p>Besides the input jar and the stage configuration, the key covers the code of this plugin and of sl-deobf
+     * (see {@link #describeCodeSource(Class)}), so that entries written by other versions of either are never restored.
+     *
+     * @param inputJar The input jar of the stages
+     * @param stageConfiguration A string describing all settings which affect the outcome of the stages
+     * @return The key of the cache entry
+     * @throws IOException If the input jar could not be read
+     */
+    @NotNull
+    public static String computeKey(@NotNull Path inputJar, @NotNull String stageConfiguration) throws IOException {
+        MessageDigest digest = DeobfuscationStageCache.newDigest();
+        DeobfuscationStageCache.update(digest, inputJar);
+        digest.update((byte) 0);
+        digest.update(("v" + DeobfuscationStageCache.CACHE_FORMAT_VERSION + ";" + stageConfiguration).getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(("sml6=" + DeobfuscationStageCache.describeCodeSource(DeobfuscationStageCache.class)
+                + ";sldeobf=" + DeobfuscationStageCache.describeCodeSource(Oaktree.class)).getBytes(StandardCharsets.UTF_8));
+        return DeobfuscationStageCache.toHex(digest.digest());
+    }
+
+    /**
+     * Describes the code a class was loaded from. If the class was loaded from a jar, the code is described by the
+     * SHA-256 hash of the jar. Otherwise (for example when the class was loaded from a classes directory), the
+     * implementation version of the package of the class is used, if present.
+     *
+     * @param clazz The class
+     * @return A string which changes whenever the code the class was loaded from changes
+     * @throws IOException If the jar the class was loaded from could not be read
+     */
+    @NotNull
+    private static String describeCodeSource(@NotNull Class<?> clazz) throws IOException {
+        String description = DeobfuscationStageCache.CODE_SOURCES.get(clazz);
+        if (description != null) {
+            return description;
+        }
+
+        Path location = null;
+        CodeSource codeSource = clazz.getProtectionDomain().getCodeSource();
+        if (codeSource != null && codeSource.getLocation() != null) {
+            try {
+                location = Paths.get(codeSource.getLocation().toURI());
+            } catch (URISyntaxException | IllegalArgumentException | FileSystemNotFoundException e) {
+                location = null;
+            }
+        }
+
+        if (location != null && Files.isRegularFile(location)) {
+            MessageDigest digest = DeobfuscationStageCache.newDigest();
+            DeobfuscationStageCache.update(digest, location);
+            description = "sha256:" + DeobfuscationStageCache.toHex(digest.digest());
+        } else {
+            description = "version:" + clazz.getPackage().getImplementationVersion();
+        }
+        DeobfuscationStageCache.CODE_SOURCES.put(clazz, description);
+        return description;
+    }
+
+    @NotNull
+    private static String markerContents(boolean hasIntermediaries) {
+        return "v" + DeobfuscationStageCache.CACHE_FORMAT_VERSION + ";intermediaries=" + hasIntermediaries;
+    }
+
+    private static void deleteRecursively(@NotNull Path directory) throws IOException {
+        if (Files.notExists(directory)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    @NotNull
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported by this JVM", e);
+        }
+    }
+
+    @NotNull
+    private static String toHex(byte @NotNull[] bytes) {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0x0F, 16));
+            hex.append(Character.forDigit(b & 0x0F, 16));
+        }
+        return hex.toString();
+    }
+
+    private static void update(@NotNull MessageDigest digest, @NotNull Path file) throws IOException {
+        byte[] buffer = new byte[8192];
+        try (InputStream in = Files.newInputStream(file)) {
+            for (int read = in.read(buffer); read != -1; read = in.read(buffer)) {
+                digest.update(buffer, 0, read);
+            }
+        }
+    }
+
+    @NotNull
+    private final Path cacheDirectory;
+
+    public DeobfuscationStageCache(@NotNull Path cacheDirectory) {
+        this.cacheDirectory = cacheDirectory;
+    }
+
+    /**
+     * Moves a directory within the cache directory out of the way and deletes it. Unlike deleting the directory in place,
+     * concurrent builds never observe the directory in a partially deleted state.
+     *
+     * @param directory The directory to delete
+     * @throws IOException If the directory could not be moved or deleted
+     */
+    private void discard(@NotNull Path directory) throws IOException {
+        Path graveyard = Files.createTempDirectory(this.cacheDirectory, directory.getFileName() + ".stale");
+        try {
+            try {
+                Files.move(directory, graveyard.resolve(directory.getFileName()), StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(directory, graveyard.resolve(directory.getFileName()));
+            }
+        } catch (NoSuchFileException e) {
+            // Already discarded by another process
+        } finally {
+            DeobfuscationStageCache.deleteRecursively(graveyard);
+        }
+    }
+
+    /**
+     * Evicts entries which were not used for {@link #MAX_UNUSED_DAYS} days as well as temporary directories which
+     * were left behind by interrupted builds.
+     *
+     * @throws IOException If the cache directory could not be listed
+     */
+    private void evictUnusedEntries() throws IOException {
+        Instant now = Instant.now();
+        List<Path> directories;
+        try (Stream<Path> files = Files.list(this.cacheDirectory)) {
+            directories = files.filter(Files::isDirectory).collect(Collectors.toList());
+        }
+
+        for (Path directory : directories) {
+            try {
+                Path marker = directory.resolve(DeobfuscationStageCache.MARKER_FILE);
+                Instant lastUsed;
+                Duration maxAge;
+                if (Files.exists(marker)) {
+                    lastUsed = Files.getLastModifiedTime(marker).toInstant();
+                    maxAge = Duration.ofDays(DeobfuscationStageCache.MAX_UNUSED_DAYS);
+                } else {
+                    // Either an entry that is still being written or a leftover of an interrupted build
+                    lastUsed = Files.getLastModifiedTime(directory).toInstant();
+                    maxAge = Duration.ofHours(DeobfuscationStageCache.MAX_TEMPORARY_HOURS);
+                }
+                if (lastUsed.plus(maxAge).isBefore(now)) {
+                    this.discard(directory);
+                }
+            } catch (IOException e) {
+                // Discarded or still in use by another process, in the latter case eviction is retried on the next store
+            }
+        }
+    }
+
+    /**
+     * Restores a cache entry.
+     *
+     * @param key The key of the entry, as computed by {@link #computeKey(Path, String)}
+     * @param nodes The list to add the cached class nodes to. The list is left untouched if no entry exists.
+     * @param intermediaryMappings The file to copy the cached sl-intermediary mappings to, if the entry has any
+     * @return True if the entry existed and was restored, false if there is no complete entry with the given key
+     * @throws IOException If the entry exists but could not be read or is corrupt
+     */
+    public boolean restore(@NotNull String key, @NotNull List<ClassNode> nodes, @NotNull Path intermediaryMappings) throws IOException {
+        Path entry = this.cacheDirectory.resolve(key);
+        Path marker = entry.resolve(DeobfuscationStageCache.MARKER_FILE);
+        String markerContents;
+        try {
+            markerContents = Files.readString(marker, StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+        boolean hasIntermediaries;
+        if (markerContents.equals(DeobfuscationStageCache.markerContents(true))) {
+            hasIntermediaries = true;
+        } else if (markerContents.equals(DeobfuscationStageCache.markerContents(false))) {
+            hasIntermediaries = false;
+        } else {
+            throw new IOException("Corrupt marker file in stage cache entry " + key);
+        }
+
+        Path classesFile = entry.resolve(DeobfuscationStageCache.CLASSES_FILE);
+
+        List<ClassNode> restored = new ArrayList<>();
+        try (ZipInputStream zipIn = new ZipInputStream(Files.newInputStream(classesFile))) {
+            for (ZipEntry zipEntry = zipIn.getNextEntry(); zipEntry != null; zipEntry = zipIn.getNextEntry()) {
+                ClassNode node = new ClassNode();
+                try {
+                    new ClassReader(zipIn.readAllBytes()).accept(node, 0);
+                } catch (RuntimeException e) {
+                    // ASM reports malformed class files through unchecked exceptions
+                    throw new IOException("Corrupt class file " + zipEntry.getName() + " in stage cache entry " + key, e);
+                }
+                restored.add(node);
+            }
+        }
+
+        // The marker is authoritative, a missing intermediary file is an error rather than an absence of intermediaries
+        if (hasIntermediaries) {
+            Files.createDirectories(intermediaryMappings.toAbsolutePath().getParent());
+            Files.copy(entry.resolve(DeobfuscationStageCache.INTERMEDIARY_FILE), intermediaryMappings, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        try {
+            Files.setLastModifiedTime(marker, FileTime.from(Instant.now()));
+        } catch (IOException e) {
+            // Not being able to record the use of the entry only makes it subject to eviction earlier
+        }
+
+        nodes.addAll(restored);
+        return true;
+    }
+
+    /**
+     * Stores a cache entry, replacing any existing entry with the same key. Unused entries are evicted afterwards.
+     *
+     * @param key The key of the entry, as computed by {@link #computeKey(Path, String)}
+     * @param nodes The class nodes to store
+     * @param intermediaryMappings The sl-intermediary mappings file to store, or null if no such mappings were generated
+     * @throws IOException If the entry could not be written
+     */
+    public void store(@NotNull String key, @NotNull List<ClassNode> nodes, @Nullable Path intermediaryMappings) throws IOException {
+        Files.createDirectories(this.cacheDirectory);
+        Path tempEntry = Files.createTempDirectory(this.cacheDirectory, key + ".tmp");
+        try {
+            try (ZipOutputStream zipOut = new ZipOutputStream(Files.newOutputStream(tempEntry.resolve(DeobfuscationStageCache.CLASSES_FILE)))) {
+                // Entries are numbered rather than named after the class in order to retain the order of the nodes
+                // and to not depend on class names being valid file names
+                int index = 0;
+                for (ClassNode node : nodes) {
+                    ClassWriter writer = new ClassWriter(0);
+                    node.accept(writer);
+                    zipOut.putNextEntry(new ZipEntry(index++ + ".class"));
+                    zipOut.write(writer.toByteArray());
+                    zipOut.closeEntry();
+                }
+            }
+
+            boolean hasIntermediaries = intermediaryMappings != null && Files.exists(intermediaryMappings);
+            if (hasIntermediaries) {
+                try (OutputStream out = Files.newOutputStream(tempEntry.resolve(DeobfuscationStageCache.INTERMEDIARY_FILE))) {
+                    Files.copy(intermediaryMappings, out);
+                }
+            }
+            Files.writeString(tempEntry.resolve(DeobfuscationStageCache.MARKER_FILE), DeobfuscationStageCache.markerContents(hasIntermediaries), StandardCharsets.UTF_8);
+
+            Path entry = this.cacheDirectory.resolve(key);
+            if (Files.exists(entry)) {
+                this.discard(entry);
+            }
+            try {
+                Files.move(tempEntry, entry, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                // The marker file keeps the entry from being restored until all of it was moved
+                Files.move(tempEntry, entry);
+            } catch (DirectoryNotEmptyException | FileAlreadyExistsException e) {
+                // Another process raced us, in which case their entry is just as good as ours
+            }
+        } finally {
+            DeobfuscationStageCache.deleteRecursively(tempEntry);
+        }
+
+        this.evictUnusedEntries();
+    }
+}
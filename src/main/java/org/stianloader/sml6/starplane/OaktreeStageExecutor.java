@@ -0,0 +1,168 @@
+package org.stianloader.sml6.starplane;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+
+import org.jetbrains.annotations.NotNull;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.tree.ClassNode;
+import org.slf4j.Logger;
+
+import de.geolykt.starloader.deobf.Oaktree;
+
+/**
+ * Runs deobfuscation stages of an {@link Oaktree} instance and logs the time spent in each stage.
+ *
+ * <p>Stages which only ever look at a single class at a time (class-local stages) can be spread over several
+ * worker threads. For this purpose, the classes are partitioned into contiguous chunks, where every chunk is
+ * exposed to the stage through a separate {@link Oaktree} instance that only contains the classes of the chunk.
+ * Stages which need to resolve other classes (cross-class stages) must instead be run sequentially on the
+ * original deobfuscator, as they would otherwise only see a fraction of all classes.
+ *
+ * <p>The chunk instances are plain {@link Oaktree} instances, whose name caches only cover the classes of the chunk. Whether a stage
+ * is class-local thus cannot be checked when the stage is registered. Instead, {@link #setVerifyClassLocalStages(boolean)}
+ * enables a verification mode where every class-local stage is additionally run sequentially on a copy of the classes, failing
+ * if the output of any class differs byte for byte. This doubles the cost of the class-local stages, but should only be
+ * disabled once the stages have been verified against the classes they are run on.
+ */
+public final class OaktreeStageExecutor implements AutoCloseable {
+
+    @NotNull
+    private final Oaktree deobfuscator;
+    @NotNull
+    private final Logger logger;
+    private final ForkJoinPool pool;
+    private final int threads;
+    private boolean verifyClassLocalStages;
+
+    /**
+     * Constructor.
+     *
+     * @param deobfuscator The deobfuscator whose classes should be processed
+     * @param threads The amount of worker threads to use for class-local stages. Values smaller than 2 disable parallel execution.
+     * @param logger The logger to log stage timings to
+     */
+    public OaktreeStageExecutor(@NotNull Oaktree deobfuscator, int threads, @NotNull Logger logger) {
+        this.deobfuscator = deobfuscator;
+        this.logger = logger;
+        this.threads = Math.max(1, threads);
+        this.pool = this.threads == 1 ? null : new ForkJoinPool(this.threads);
+    }
+
+    @Override
+    public void close() {
+        if (this.pool != null) {
+            this.pool.shutdown();
+        }
+    }
+
+    /**
+     * Runs a class-local stage. The stage may be invoked multiple times concurrently,
+     * each time on a different {@link Oaktree} instance.
+     *
+     * @param name The name of the stage, used for logging
+     * @param stage The stage to run
+     */
+    public void runClassLocal(@NotNull String name, @NotNull Consumer<@NotNull Oaktree> stage) {
+        List<ClassNode> nodes = this.deobfuscator.getClassNodesDirectly();
+        if (this.pool == null || nodes.size() < this.threads) {
+            this.runSequential(name, stage);
+            return;
+        }
+
+        List<byte[]> snapshot = this.verifyClassLocalStages ? OaktreeStageExecutor.serialize(nodes) : null;
+        long start = System.nanoTime();
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(this.threads);
+        int chunkSize = (nodes.size() + this.threads - 1) / this.threads;
+        for (int from = 0; from < nodes.size(); from += chunkSize) {
+            Oaktree chunk = new Oaktree();
+            chunk.getClassNodesDirectly().addAll(nodes.subList(from, Math.min(nodes.size(), from + chunkSize)));
+            chunk.invalidateNameCaches();
+            tasks.add(this.pool.submit(() -> stage.accept(chunk)));
+        }
+        for (ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+        this.logger.info("Ran class-local stage '{}' on {} threads in {} ms.", name, tasks.size(), (System.nanoTime() - start) / 1_000_000L);
+
+        if (snapshot != null) {
+            this.verifyClassLocal(name, stage, snapshot, nodes);
+        }
+    }
+
+    /**
+     * Enables or disables the verification of class-local stages. When enabled, every class-local stage that is run in chunks
+     * is also run sequentially on a single {@link Oaktree} instance containing a copy of all classes. If the output of both
+     * runs differs for any class, the stage depends on classes outside of its chunk and an exception is thrown.
+     *
+     * @param verifyClassLocalStages Whether to verify class-local stages
+     */
+    public void setVerifyClassLocalStages(boolean verifyClassLocalStages) {
+        this.verifyClassLocalStages = verifyClassLocalStages;
+    }
+
+    @NotNull
+    private static List<byte[]> serialize(@NotNull List<ClassNode> nodes) {
+        List<byte[]> serialized = new ArrayList<>(nodes.size());
+        for (ClassNode node : nodes) {
+            ClassWriter writer = new ClassWriter(0);
+            node.accept(writer);
+            serialized.add(writer.toByteArray());
+        }
+        return serialized;
+    }
+
+    /**
+     * Runs a class-local stage sequentially on a copy of the classes as they were before the stage was run in chunks,
+     * and compares the output of both runs.
+     *
+     * @param name The name of the stage
+     * @param stage The stage
+     * @param snapshot The serialized classes before the stage was run
+     * @param nodes The classes after the stage was run in chunks
+     * @throws IllegalStateException If the output of the runs differs
+     */
+    private void verifyClassLocal(@NotNull String name, @NotNull Consumer<@NotNull Oaktree> stage, @NotNull List<byte[]> snapshot, @NotNull List<ClassNode> nodes) {
+        long start = System.nanoTime();
+        Oaktree reference = new Oaktree();
+        for (byte[] classFile : snapshot) {
+            ClassNode node = new ClassNode();
+            new ClassReader(classFile).accept(node, 0);
+            reference.getClassNodesDirectly().add(node);
+        }
+        reference.invalidateNameCaches();
+        stage.accept(reference);
+
+        List<byte[]> expected = OaktreeStageExecutor.serialize(reference.getClassNodesDirectly());
+        List<byte[]> actual = OaktreeStageExecutor.serialize(nodes);
+        List<String> mismatches = new ArrayList<>();
+        for (int i = 0; i < actual.size(); i++) {
+            if (!Arrays.equals(expected.get(i), actual.get(i))) {
+                mismatches.add(nodes.get(i).name);
+            }
+        }
+        if (!mismatches.isEmpty()) {
+            throw new IllegalStateException("Stage '" + name + "' is not class-local: running it in " + this.threads
+                    + " chunks yields a different output than running it sequentially for " + mismatches.size() + " classes, such as "
+                    + mismatches.subList(0, Math.min(10, mismatches.size())));
+        }
+        this.logger.info("Verified that stage '{}' is class-local in {} ms.", name, (System.nanoTime() - start) / 1_000_000L);
+    }
+
+    /**
+     * Runs a stage on the calling thread using the original deobfuscator instance.
+     *
+     * @param name The name of the stage, used for logging
+     * @param stage The stage to run
+     */
+    public void runSequential(@NotNull String name, @NotNull Consumer<@NotNull Oaktree> stage) {
+        long start = System.nanoTime();
+        stage.accept(this.deobfuscator);
+        this.logger.info("Ran stage '{}' in {} ms.", name, (System.nanoTime() - start) / 1_000_000L);
+    }
+}
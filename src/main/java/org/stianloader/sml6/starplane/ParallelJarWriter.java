@@ -0,0 +1,499 @@
+package org.stianloader.sml6.starplane;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.tree.ClassNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes a set of class nodes alongside with the resources of an original jar into a new jar file.
+ *
+ * <p>Serializing and compressing the individual entries is performed concurrently. The zip file itself is assembled
+ * on the calling thread, in a deterministic order: First, all non-class entries of the original jar in the order
+ * they appear in the original jar, then all class nodes in the order they were supplied in.
+ * Class files present in the original jar are not copied, as they are superseded by the class nodes, unless they are
+ * explicitly requested to be copied as-is.
+ * Unless resource passthrough is enabled, all entries carry the same fixed timestamp so that identical inputs
+ * result in byte-identical outputs.
+ *
+ * <p>With resource passthrough, non-class entries are not recompressed. Instead, their compressed bytes are transferred
+ * from the original jar into the output as-is, alongside with their name, compression method, CRC and timestamp.
+ * The name is copied in its original encoding, so the flag denoting UTF-8 names is retained as well.
+ * Extra fields and comments of the original entries are not retained. The output remains deterministic, as all of these
+ * values only depend on the original jar.
+ *
+ * <p>Zip64 archives are not produced by this writer. If the original jar is a Zip64 archive or if the output
+ * would require Zip64, the jar is instead written sequentially through a {@link JarOutputStream}. In that case
+ * all entries are recompressed, but the entry order and timestamps are retained.
+ */
+public final class ParallelJarWriter {
+
+    @FunctionalInterface
+    private static interface IOSupplier<T> {
+        T get() throws IOException;
+    }
+
+    private static final class PreparedEntry {
+        private final long compressedSize;
+        private final long crc;
+        /**
+         * The compressed bytes of the entry, or null if the compressed bytes are to be transferred from the original jar.
+         */
+        private final byte @Nullable[] data;
+        private final int dosDate;
+        private final int dosTime;
+        /**
+         * The general purpose bit flags of the entry. Only the flag denoting UTF-8 names is ever set.
+         */
+        private final int flags;
+        private final int method;
+        @NotNull
+        private final byte @NotNull[] name;
+        /**
+         * The offset of the compressed bytes within the original jar, only meaningful if {@link #data} is null.
+         */
+        private final long sourceOffset;
+        private final long uncompressedSize;
+
+        private PreparedEntry(byte @NotNull[] name, int flags, int method, int dosTime, int dosDate, long crc, long compressedSize, long uncompressedSize, byte @Nullable[] data, long sourceOffset) {
+            this.name = name;
+            this.flags = flags;
+            this.method = method;
+            this.dosTime = dosTime;
+            this.dosDate = dosDate;
+            this.crc = crc;
+            this.compressedSize = compressedSize;
+            this.uncompressedSize = uncompressedSize;
+            this.data = data;
+            this.sourceOffset = sourceOffset;
+        }
+    }
+
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014B50;
+    private static final int CENTRAL_HEADER_SIZE = 46;
+
+    /**
+     * The DOS date of all entries: 1980-02-01, which is the same constant Gradle uses for reproducible archives.
+     */
+    private static final int DOS_DATE = (0 << 9) | (2 << 5) | 1;
+    private static final int DOS_TIME = 0;
+    private static final int END_RECORD_SIGNATURE = 0x06054B50;
+    private static final int END_RECORD_SIZE = 22;
+    private static final int FLAG_ENCRYPTED = 0x0001;
+    private static final int FLAG_UTF8 = 0x0800;
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034B50;
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final Logger LOGGER = LoggerFactory.getLogger(ParallelJarWriter.class);
+    private static final long MAX_ZIP32_OFFSET = 0xFFFFFFFFL;
+    private static final int MAX_ZIP32_ENTRIES = 0xFFFF;
+    private static final int VERSION = 20;
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064B50;
+    private static final int ZIP64_LOCATOR_SIZE = 20;
+
+    /**
+     * Reads the central directory of the memory-mapped original jar and creates passthrough entries for all
+     * non-class entries in it as well as the requested class entries.
+     *
+     * @return The passthrough entries, or null if the original jar is a Zip64 archive
+     */
+    @Nullable
+    private static List<PreparedEntry> collectPassthroughEntries(@NotNull MappedByteBuffer jar, @NotNull Set<String> passthroughClassEntries) throws IOException {
+        int endRecord = -1;
+        for (int i = jar.limit() - ParallelJarWriter.END_RECORD_SIZE; i >= Math.max(0, jar.limit() - ParallelJarWriter.END_RECORD_SIZE - 0xFFFF); i--) {
+            if (jar.getInt(i) == ParallelJarWriter.END_RECORD_SIGNATURE) {
+                endRecord = i;
+                break;
+            }
+        }
+        if (endRecord == -1) {
+            throw new ZipException("Unable to locate the end of central directory record");
+        }
+
+        int entryCount = Short.toUnsignedInt(jar.getShort(endRecord + 10));
+        long centralDirectory = Integer.toUnsignedLong(jar.getInt(endRecord + 16));
+        if (entryCount == ParallelJarWriter.MAX_ZIP32_ENTRIES || centralDirectory == ParallelJarWriter.MAX_ZIP32_OFFSET
+                || (endRecord >= ParallelJarWriter.ZIP64_LOCATOR_SIZE && jar.getInt(endRecord - ParallelJarWriter.ZIP64_LOCATOR_SIZE) == ParallelJarWriter.ZIP64_LOCATOR_SIGNATURE)) {
+            return null;
+        }
+
+        List<PreparedEntry> entries = new ArrayList<>(entryCount);
+        int pos = (int) centralDirectory;
+        for (int i = 0; i < entryCount; i++) {
+            if (jar.getInt(pos) != ParallelJarWriter.CENTRAL_HEADER_SIGNATURE) {
+                throw new ZipException("Malformed central directory header at offset " + pos);
+            }
+            int flags = Short.toUnsignedInt(jar.getShort(pos + 8));
+            int method = Short.toUnsignedInt(jar.getShort(pos + 10));
+            int dosTime = Short.toUnsignedInt(jar.getShort(pos + 12));
+            int dosDate = Short.toUnsignedInt(jar.getShort(pos + 14));
+            long crc = Integer.toUnsignedLong(jar.getInt(pos + 16));
+            long compressedSize = Integer.toUnsignedLong(jar.getInt(pos + 20));
+            long uncompressedSize = Integer.toUnsignedLong(jar.getInt(pos + 24));
+            int nameLength = Short.toUnsignedInt(jar.getShort(pos + 28));
+            int extraLength = Short.toUnsignedInt(jar.getShort(pos + 30));
+            int commentLength = Short.toUnsignedInt(jar.getShort(pos + 32));
+            long localHeader = Integer.toUnsignedLong(jar.getInt(pos + 42));
+
+            byte[] name = new byte[nameLength];
+            jar.get(pos + ParallelJarWriter.CENTRAL_HEADER_SIZE, name);
+            pos += ParallelJarWriter.CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+
+            String decodedName = new String(name, StandardCharsets.UTF_8);
+            if (decodedName.endsWith(".class") && !passthroughClassEntries.contains(decodedName)) {
+                continue;
+            }
+            if ((flags & ParallelJarWriter.FLAG_ENCRYPTED) != 0) {
+                throw new ZipException("Encrypted entries are not supported: " + decodedName);
+            }
+            if (compressedSize == ParallelJarWriter.MAX_ZIP32_OFFSET || uncompressedSize == ParallelJarWriter.MAX_ZIP32_OFFSET || localHeader == ParallelJarWriter.MAX_ZIP32_OFFSET) {
+                return null;
+            }
+            if (jar.getInt((int) localHeader) != ParallelJarWriter.LOCAL_HEADER_SIGNATURE) {
+                throw new ZipException("Malformed local file header for entry " + decodedName);
+            }
+
+            // The extra field of the local header may differ from the one in the central directory
+            int localNameLength = Short.toUnsignedInt(jar.getShort((int) localHeader + 26));
+            int localExtraLength = Short.toUnsignedInt(jar.getShort((int) localHeader + 28));
+            long dataOffset = localHeader + ParallelJarWriter.LOCAL_HEADER_SIZE + localNameLength + localExtraLength;
+            // The raw name bytes are copied, so the encoding of the name must be retained
+            entries.add(new PreparedEntry(name, flags & ParallelJarWriter.FLAG_UTF8, method, dosTime, dosDate, crc, compressedSize, uncompressedSize, null, dataOffset));
+        }
+        return entries;
+    }
+
+    @NotNull
+    private static PreparedEntry prepare(@NotNull String name, byte @NotNull[] contents) {
+        byte[] encodedName = name.getBytes(StandardCharsets.UTF_8);
+        CRC32 crc = new CRC32();
+        crc.update(contents);
+
+        if (name.endsWith("/")) {
+            return new PreparedEntry(encodedName, ParallelJarWriter.FLAG_UTF8, ZipEntry.STORED, ParallelJarWriter.DOS_TIME, ParallelJarWriter.DOS_DATE, crc.getValue(), contents.length, contents.length, contents, -1);
+        }
+
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            deflater.setInput(contents);
+            deflater.finish();
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(64, contents.length / 2));
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                int length = deflater.deflate(buffer);
+                compressed.write(buffer, 0, length);
+            }
+            byte[] data = compressed.toByteArray();
+            return new PreparedEntry(encodedName, ParallelJarWriter.FLAG_UTF8, ZipEntry.DEFLATED, ParallelJarWriter.DOS_TIME, ParallelJarWriter.DOS_DATE, crc.getValue(), data.length, contents.length, data, -1);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Serializes a class node the same way Oaktree#write does: Without computing maximum stack sizes, local
+     * variable counts or stack map frames, so that the output classes do not depend on the writer used.
+     */
+    private static byte @NotNull[] serialize(@NotNull ClassNode node) {
+        ClassWriter writer = new ClassWriter(0);
+        node.accept(writer);
+        return writer.toByteArray();
+    }
+
+    @NotNull
+    private static <T> Supplier<T> unchecked(@NotNull IOSupplier<T> supplier) {
+        return () -> {
+            try {
+                return supplier.get();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+    }
+
+    private static void writeFully(@NotNull WritableByteChannel out, @NotNull ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+
+    private final boolean passthroughResources;
+    private final int threads;
+
+    /**
+     * Constructor.
+     *
+     * @param threads The amount of worker threads to use for serializing and compressing entries
+     * @param passthroughResources Whether to copy the compressed bytes of non-class entries as-is instead of recompressing them
+     */
+    public ParallelJarWriter(int threads, boolean passthroughResources) {
+        this.threads = Math.max(1, threads);
+        this.passthroughResources = passthroughResources;
+    }
+
+    /**
+     * Assembles the zip file from the prepared entries. Nothing is written if the output would require Zip64.
+     *
+     * @return True if the zip file was written, false if the output would require Zip64
+     */
+    private boolean assemble(@NotNull List<CompletableFuture<PreparedEntry>> futures, @NotNull FileChannel source, @NotNull WritableByteChannel out) throws IOException {
+        List<PreparedEntry> entries = new ArrayList<>(futures.size());
+        long centralDirectoryOffset = 0;
+        long centralDirectorySize = 0;
+        for (CompletableFuture<PreparedEntry> future : futures) {
+            PreparedEntry entry;
+            try {
+                entry = future.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof UncheckedIOException) {
+                    throw ((UncheckedIOException) e.getCause()).getCause();
+                }
+                throw e;
+            }
+            if (entry.compressedSize > ParallelJarWriter.MAX_ZIP32_OFFSET || entry.uncompressedSize > ParallelJarWriter.MAX_ZIP32_OFFSET) {
+                return false;
+            }
+            entries.add(entry);
+            centralDirectoryOffset += ParallelJarWriter.LOCAL_HEADER_SIZE + entry.name.length + entry.compressedSize;
+            centralDirectorySize += ParallelJarWriter.CENTRAL_HEADER_SIZE + entry.name.length;
+        }
+
+        // The offset of every local header is below the offset of the central directory
+        if (entries.size() >= ParallelJarWriter.MAX_ZIP32_ENTRIES || centralDirectoryOffset > ParallelJarWriter.MAX_ZIP32_OFFSET
+                || centralDirectorySize > ParallelJarWriter.MAX_ZIP32_OFFSET) {
+            return false;
+        }
+
+        ByteArrayOutputStream centralDirectory = new ByteArrayOutputStream();
+        long offset = 0;
+        for (PreparedEntry entry : entries) {
+            ByteBuffer localHeader = ByteBuffer.allocate(ParallelJarWriter.LOCAL_HEADER_SIZE + entry.name.length).order(ByteOrder.LITTLE_ENDIAN);
+            localHeader.putInt(ParallelJarWriter.LOCAL_HEADER_SIGNATURE);
+            localHeader.putShort((short) ParallelJarWriter.VERSION);
+            localHeader.putShort((short) entry.flags);
+            localHeader.putShort((short) entry.method);
+            localHeader.putShort((short) entry.dosTime);
+            localHeader.putShort((short) entry.dosDate);
+            localHeader.putInt((int) entry.crc);
+            localHeader.putInt((int) entry.compressedSize);
+            localHeader.putInt((int) entry.uncompressedSize);
+            localHeader.putShort((short) entry.name.length);
+            localHeader.putShort((short) 0); // Extra field length
+            localHeader.put(entry.name);
+            localHeader.flip();
+            ParallelJarWriter.writeFully(out, localHeader);
+
+            byte[] data = entry.data;
+            if (data != null) {
+                ParallelJarWriter.writeFully(out, ByteBuffer.wrap(data));
+            } else {
+                long transferred = 0;
+                while (transferred < entry.compressedSize) {
+                    long n = source.transferTo(entry.sourceOffset + transferred, entry.compressedSize - transferred, out);
+                    if (n <= 0) {
+                        throw new ZipException("Unexpected end of original jar while copying entry " + new String(entry.name, StandardCharsets.UTF_8));
+                    }
+                    transferred += n;
+                }
+            }
+
+            ByteBuffer centralHeader = ByteBuffer.allocate(ParallelJarWriter.CENTRAL_HEADER_SIZE + entry.name.length).order(ByteOrder.LITTLE_ENDIAN);
+            centralHeader.putInt(ParallelJarWriter.CENTRAL_HEADER_SIGNATURE);
+            centralHeader.putShort((short) ParallelJarWriter.VERSION);
+            centralHeader.putShort((short) ParallelJarWriter.VERSION);
+            centralHeader.putShort((short) entry.flags);
+            centralHeader.putShort((short) entry.method);
+            centralHeader.putShort((short) entry.dosTime);
+            centralHeader.putShort((short) entry.dosDate);
+            centralHeader.putInt((int) entry.crc);
+            centralHeader.putInt((int) entry.compressedSize);
+            centralHeader.putInt((int) entry.uncompressedSize);
+            centralHeader.putShort((short) entry.name.length);
+            centralHeader.putShort((short) 0); // Extra field length
+            centralHeader.putShort((short) 0); // Comment length
+            centralHeader.putShort((short) 0); // Disk number
+            centralHeader.putShort((short) 0); // Internal attributes
+            centralHeader.putInt(0); // External attributes
+            centralHeader.putInt((int) offset);
+            centralHeader.put(entry.name);
+            centralDirectory.write(centralHeader.array());
+
+            offset += ParallelJarWriter.LOCAL_HEADER_SIZE + entry.name.length + entry.compressedSize;
+        }
+
+        ParallelJarWriter.writeFully(out, ByteBuffer.wrap(centralDirectory.toByteArray()));
+
+        ByteBuffer endRecord = ByteBuffer.allocate(ParallelJarWriter.END_RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        endRecord.putInt(ParallelJarWriter.END_RECORD_SIGNATURE);
+        endRecord.putShort((short) 0); // Disk number
+        endRecord.putShort((short) 0); // Disk containing the central directory
+        endRecord.putShort((short) entries.size());
+        endRecord.putShort((short) entries.size());
+        endRecord.putInt(centralDirectory.size());
+        endRecord.putInt((int) offset);
+        endRecord.putShort((short) 0); // Comment length
+        endRecord.flip();
+        ParallelJarWriter.writeFully(out, endRecord);
+        return true;
+    }
+
+    /**
+     * Writes the jar. The output stream is not closed by this method.
+     *
+     * <p>When writing to a file, {@link #write(List, Set, Path, Path)} should be preferred, as it allows the
+     * compressed bytes of passed-through entries to be transferred without copying them through the heap.
+     *
+     * @param nodes The class nodes to write
+     * @param passthroughClassEntries The names of the class entries of the original jar to copy as-is
+     * @param originalJar The jar to copy non-class entries from
+     * @param out The stream to write the jar to
+     * @throws IOException If reading the original jar or writing the output failed
+     */
+    public void write(@NotNull List<ClassNode> nodes, @NotNull Set<String> passthroughClassEntries, @NotNull Path originalJar, @NotNull OutputStream out) throws IOException {
+        this.write(nodes, passthroughClassEntries, originalJar, Channels.newChannel(out));
+        out.flush();
+    }
+
+    /**
+     * Writes the jar to a file, replacing the file if it already exists.
+     *
+     * @param nodes The class nodes to write
+     * @param passthroughClassEntries The names of the class entries of the original jar to copy as-is
+     * @param originalJar The jar to copy non-class entries from
+     * @param outputJar The file to write the jar to
+     * @throws IOException If reading the original jar or writing the output failed
+     */
+    public void write(@NotNull List<ClassNode> nodes, @NotNull Set<String> passthroughClassEntries, @NotNull Path originalJar, @NotNull Path outputJar) throws IOException {
+        try (FileChannel out = FileChannel.open(outputJar, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            this.write(nodes, passthroughClassEntries, originalJar, out);
+        }
+    }
+
+    private void write(@NotNull List<ClassNode> nodes, @NotNull Set<String> passthroughClassEntries, @NotNull Path originalJar, @NotNull WritableByteChannel out) throws IOException {
+        if (!this.writeParallel(nodes, passthroughClassEntries, originalJar, out)) {
+            this.writeSequentially(nodes, passthroughClassEntries, originalJar, Channels.newOutputStream(out));
+        }
+    }
+
+    /**
+     * Writes the jar by concurrently preparing the entries and then assembling them. Nothing is written if Zip64 is required.
+     *
+     * @return True if the jar was written, false if the original jar or the output jar requires Zip64
+     */
+    private boolean writeParallel(@NotNull List<ClassNode> nodes, @NotNull Set<String> passthroughClassEntries, @NotNull Path originalJar, @NotNull WritableByteChannel out) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(this.threads);
+        try (FileChannel source = FileChannel.open(originalJar, StandardOpenOption.READ);
+                ZipFile original = this.passthroughResources ? null : new ZipFile(originalJar.toFile())) {
+            List<CompletableFuture<PreparedEntry>> entries = new ArrayList<>();
+
+            if (original == null) {
+                // Original jars above 2 GiB cannot be mapped at once, but those would need Zip64 anyways
+                List<PreparedEntry> passthroughEntries = null;
+                if (source.size() <= Integer.MAX_VALUE) {
+                    MappedByteBuffer mappedJar = source.map(FileChannel.MapMode.READ_ONLY, 0, source.size());
+                    mappedJar.order(ByteOrder.LITTLE_ENDIAN);
+                    passthroughEntries = ParallelJarWriter.collectPassthroughEntries(mappedJar, passthroughClassEntries);
+                }
+                if (passthroughEntries == null) {
+                    ParallelJarWriter.LOGGER.info("{} is a Zip64 archive, falling back to sequential jar writing.", originalJar.getFileName());
+                    return false;
+                }
+                for (PreparedEntry entry : passthroughEntries) {
+                    entries.add(CompletableFuture.completedFuture(entry));
+                }
+            } else {
+                for (Enumeration<? extends ZipEntry> e = original.entries(); e.hasMoreElements();) {
+                    ZipEntry entry = e.nextElement();
+                    if (entry.getName().endsWith(".class") && !passthroughClassEntries.contains(entry.getName())) {
+                        continue;
+                    }
+                    entries.add(CompletableFuture.supplyAsync(ParallelJarWriter.unchecked(() -> {
+                        return ParallelJarWriter.prepare(entry.getName(), original.getInputStream(entry).readAllBytes());
+                    }), pool));
+                }
+            }
+
+            for (ClassNode node : nodes) {
+                entries.add(CompletableFuture.supplyAsync(() -> ParallelJarWriter.prepare(node.name + ".class", ParallelJarWriter.serialize(node)), pool));
+            }
+
+            if (!this.assemble(entries, source, out)) {
+                ParallelJarWriter.LOGGER.info("Output jar requires Zip64, falling back to sequential jar writing.");
+                return false;
+            }
+            return true;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Writes the jar through a {@link JarOutputStream}, which transparently uses Zip64 where required.
+     * The output stream is not closed by this method.
+     */
+    private void writeSequentially(@NotNull List<ClassNode> nodes, @NotNull Set<String> passthroughClassEntries, @NotNull Path originalJar, @NotNull OutputStream out) throws IOException {
+        LocalDateTime fixedTime = LocalDateTime.of(1980, 2, 1, 0, 0);
+        try (ZipFile original = new ZipFile(originalJar.toFile())) {
+            JarOutputStream jarOut = new JarOutputStream(out);
+            for (Enumeration<? extends ZipEntry> e = original.entries(); e.hasMoreElements();) {
+                ZipEntry entry = e.nextElement();
+                if (entry.getName().endsWith(".class") && !passthroughClassEntries.contains(entry.getName())) {
+                    continue;
+                }
+                JarEntry copy = new JarEntry(entry.getName());
+                if (this.passthroughResources) {
+                    copy.setTime(entry.getTime());
+                } else {
+                    copy.setTimeLocal(fixedTime);
+                }
+                jarOut.putNextEntry(copy);
+                try (InputStream in = original.getInputStream(entry)) {
+                    in.transferTo(jarOut);
+                }
+                jarOut.closeEntry();
+            }
+
+            for (ClassNode node : nodes) {
+                JarEntry entry = new JarEntry(node.name + ".class");
+                entry.setTimeLocal(fixedTime);
+                jarOut.putNextEntry(entry);
+                jarOut.write(ParallelJarWriter.serialize(node));
+                jarOut.closeEntry();
+            }
+            jarOut.finish();
+        }
+        out.flush();
+    }
+}
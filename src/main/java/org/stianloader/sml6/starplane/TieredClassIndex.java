@@ -0,0 +1,192 @@
+package org.stianloader.sml6.starplane;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.jetbrains.annotations.NotNull;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldNode;
+import org.objectweb.asm.tree.InnerClassNode;
+import org.objectweb.asm.tree.MethodNode;
+
+/**
+ * Keeps track of which classes of a jar are fully loaded and which classes are only loaded as far as their hierarchy is concerned.
+ *
+ * <p>Classes within one of the configured library packages are read with {@link ClassReader#SKIP_CODE}, so that only
+ * their name, supertypes, member signatures and annotations are present. These hierarchy-only nodes are made visible to the
+ * deobfuscation stages, as the stages may need to resolve the hierarchy of a game class. However, they are never written;
+ * instead their original bytes are copied into the output jar. All other classes are read in full.
+ *
+ * <p>As the hierarchy-only nodes are discarded, the stages may neither rename nor otherwise alter them. Calling
+ * {@link #verifyUntouched()} detects whether this assumption was violated.
+ *
+ * <p>Nodes added to the class node list of an {@link de.geolykt.starloader.deobf.Oaktree} directly are not part of its name
+ * caches, so {@link de.geolykt.starloader.deobf.Oaktree#invalidateNameCaches()} needs to be called after loading the nodes.
+ */
+public final class TieredClassIndex {
+
+    /**
+     * Creates an index for class nodes that were obtained without going through {@link #load(Path, List, List)},
+     * for example by restoring them from the {@link DeobfuscationStageCache}. Nodes within library packages
+     * are assumed to have been loaded as hierarchy-only nodes.
+     *
+     * @param nodes The class nodes
+     * @param libraryPackages The internal names of the library packages, each ending with a slash
+     * @return The created index
+     */
+    @NotNull
+    public static TieredClassIndex fromNodes(@NotNull List<ClassNode> nodes, @NotNull List<String> libraryPackages) {
+        TieredClassIndex index = new TieredClassIndex();
+        for (ClassNode node : nodes) {
+            if (TieredClassIndex.isLibraryClass(node.name, libraryPackages)) {
+                index.hierarchyOnly.put(node, TieredClassIndex.fingerprint(node));
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Describes everything of a hierarchy-only node that the deobfuscation stages might alter: the name, access flags,
+     * generic signature, supertypes, enclosing class and method, inner class entries as well as the access flags,
+     * names, descriptors and signatures of all members. The name of the class is always the first word of the fingerprint.
+     */
+    @NotNull
+    private static String fingerprint(@NotNull ClassNode node) {
+        StringBuilder builder = new StringBuilder();
+        builder.append(node.name).append(' ').append(node.access).append(' ').append(node.signature);
+        builder.append(' ').append(node.superName).append(' ').append(node.interfaces);
+        builder.append(' ').append(node.outerClass).append(' ').append(node.outerMethod).append(' ').append(node.outerMethodDesc);
+        for (InnerClassNode innerClass : node.innerClasses) {
+            // DeobfuscateGameTask strips ACC_SUPER from all inner class entries, which has no effect on copied classes
+            builder.append(";inner ").append(innerClass.access & ~Opcodes.ACC_SUPER).append(' ').append(innerClass.name);
+            builder.append(' ').append(innerClass.outerName).append(' ').append(innerClass.innerName);
+        }
+        for (FieldNode field : node.fields) {
+            builder.append(';').append(field.access).append(' ').append(field.name).append(':').append(field.desc);
+            builder.append(' ').append(field.signature);
+        }
+        for (MethodNode method : node.methods) {
+            builder.append(';').append(method.access).append(' ').append(method.name).append(method.desc);
+            builder.append(' ').append(method.signature);
+        }
+        return builder.toString();
+    }
+
+    private static boolean isLibraryClass(@NotNull String name, @NotNull List<String> libraryPackages) {
+        for (String libraryPackage : libraryPackages) {
+            if (name.startsWith(libraryPackage)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reads all classes of a jar.
+     *
+     * @param jar The jar to read
+     * @param libraryPackages The internal names of the library packages, each ending with a slash
+     * @param nodes The list to add all read class nodes to, in the order they appear in the jar
+     * @return The index describing which nodes are hierarchy-only nodes
+     * @throws IOException If the jar could not be read
+     */
+    @NotNull
+    public static TieredClassIndex load(@NotNull Path jar, @NotNull List<String> libraryPackages, @NotNull List<ClassNode> nodes) throws IOException {
+        TieredClassIndex index = new TieredClassIndex();
+        try (ZipFile zip = new ZipFile(jar.toFile())) {
+            for (Enumeration<? extends ZipEntry> e = zip.entries(); e.hasMoreElements();) {
+                ZipEntry entry = e.nextElement();
+                if (!entry.getName().endsWith(".class")) {
+                    continue;
+                }
+                boolean library = TieredClassIndex.isLibraryClass(entry.getName(), libraryPackages);
+                ClassNode node = new ClassNode();
+                try (InputStream in = zip.getInputStream(entry)) {
+                    new ClassReader(in).accept(node, library ? ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES : 0);
+                }
+                if (library) {
+                    index.hierarchyOnly.put(node, TieredClassIndex.fingerprint(node));
+                }
+                nodes.add(node);
+            }
+        }
+        return index;
+    }
+
+    @NotNull
+    private final Map<ClassNode, String> hierarchyOnly = new IdentityHashMap<>();
+
+    private TieredClassIndex() {
+    }
+
+    /**
+     * Obtains the nodes that need to be written to the output jar, that is all nodes which are not hierarchy-only nodes.
+     *
+     * @param nodes All class nodes
+     * @return The fully loaded class nodes, in the order of the input list
+     */
+    @NotNull
+    public List<ClassNode> getFullyLoadedNodes(@NotNull List<ClassNode> nodes) {
+        List<ClassNode> fullyLoaded = new ArrayList<>(nodes.size() - this.hierarchyOnly.size());
+        for (ClassNode node : nodes) {
+            if (!this.hierarchyOnly.containsKey(node)) {
+                fullyLoaded.add(node);
+            }
+        }
+        return fullyLoaded;
+    }
+
+    /**
+     * Obtains the names of the jar entries which should be copied from the original jar as-is,
+     * that is the entries of all hierarchy-only nodes.
+     *
+     * @return An unmodifiable set of jar entry names
+     */
+    @NotNull
+    public Set<String> getPassthroughClassEntries() {
+        Set<String> entries = new LinkedHashSet<>();
+        for (ClassNode node : this.hierarchyOnly.keySet()) {
+            entries.add(node.name + ".class");
+        }
+        return Collections.unmodifiableSet(entries);
+    }
+
+    /**
+     * Obtains the amount of hierarchy-only nodes.
+     *
+     * @return The amount of nodes that are not fully loaded
+     */
+    public int getHierarchyOnlyCount() {
+        return this.hierarchyOnly.size();
+    }
+
+    /**
+     * Verifies that all hierarchy-only nodes are unchanged, that is neither renamed nor altered in their access flags,
+     * signatures, inner class entries or members. As hierarchy-only nodes are not written, changes to them would otherwise
+     * silently be lost.
+     *
+     * @throws IllegalStateException If a hierarchy-only node was altered
+     */
+    public void verifyUntouched() {
+        for (Map.Entry<ClassNode, String> entry : this.hierarchyOnly.entrySet()) {
+            if (!TieredClassIndex.fingerprint(entry.getKey()).equals(entry.getValue())) {
+                throw new IllegalStateException("Library class " + entry.getValue().substring(0, entry.getValue().indexOf(' '))
+                        + " was renamed or altered by the deobfuscator, however library classes are copied as-is."
+                        + " Consider removing its package from the list of library packages.");
+            }
+        }
+    }
+}
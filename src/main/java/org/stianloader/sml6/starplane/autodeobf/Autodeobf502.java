@@ -12,6 +12,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -35,11 +36,8 @@ import org.objectweb.asm.tree.VarInsnNode;
 import org.objectweb.asm.util.Textifier;
 import org.objectweb.asm.util.TraceMethodVisitor;
 
-import de.geolykt.starloader.deobf.LIFOQueue;
 import de.geolykt.starloader.deobf.MethodReference;
 import de.geolykt.starloader.deobf.StackElement;
-import de.geolykt.starloader.deobf.StackWalker;
-import de.geolykt.starloader.deobf.StackWalker.StackWalkerConsumer;
 import de.geolykt.starloader.deobf.remapper.ConflicitingMappingException;
 import de.geolykt.starloader.deobf.remapper.Remapper;
 import de.geolykt.starloader.deobf.stack.source.AbstractSource;
@@ -106,7 +104,8 @@ public class Autodeobf502 implements StarmappedNames502, AutodeobfRunner {
     private static final String WIDGET_POSITIONING_CLASS = WIDGET_CLASS + "$WIDGET_POSITIONING";
     private static final String WORDLIST_CLASS = BASE_PACKAGE + "WordList";
 
-    private static final AbstractInsnNode[] BITMAP_STAR_GENERATOR_GET_RESOURCES_LIST_METHOD_CONTENTS = new AbstractInsnNode[] {
+    @NotNull
+    private static final InsnPattern BITMAP_STAR_GENERATOR_GET_RESOURCES_LIST_METHOD_CONTENTS = InsnPattern.compile(
             new FieldInsnNode(Opcodes.GETSTATIC, "com/badlogic/gdx/Gdx", "files", "Lcom/badlogic/gdx/Files;"),
             new VarInsnNode(Opcodes.ALOAD, 0),
             new FieldInsnNode(Opcodes.GETFIELD, BITMAP_STAR_GENERATOR_CLASS, "bitmapFile", "Ljava/lang/String;"),
@@ -115,11 +114,15 @@ public class Autodeobf502 implements StarmappedNames502, AutodeobfRunner {
             new MethodInsnNode(Opcodes.INVOKEVIRTUAL, "java/io/File", "getAbsolutePath", "()Ljava/lang/String;"),
             new MethodInsnNode(Opcodes.INVOKESTATIC, "java/util/Collections", "singletonList", "(Ljava/lang/Object;)Ljava/util/List;"),
             new InsnNode(Opcodes.ARETURN)
-    };
+    );
 
     @NotNull
     private final Map<String, String> enumSettingsMemberNames = new HashMap<>();
     @NotNull
+    private final ClassHierarchyTable hierarchy;
+    @NotNull
+    private final BytecodeIndex index;
+    @NotNull
     private final Map<String, ClassNode> name2Node = new HashMap<>();
     private final List<ClassNode> nodes;
     private final Remapper remapper;
@@ -137,6 +140,8 @@ public class Autodeobf502 implements StarmappedNames502, AutodeobfRunner {
         for (ClassNode node : nodes) {
             name2Node.put(node.name, node);
         }
+        this.index = new BytecodeIndex(nodes);
+        this.hierarchy = new ClassHierarchyTable(nodes);
     }
 
     @Override
@@ -187,48 +192,6 @@ public class Autodeobf502 implements StarmappedNames502, AutodeobfRunner {
         outerNode.outerMethodDesc = null;
     }
 
-    public boolean contentsEqual(MethodNode method, AbstractInsnNode... instructions) {
-        AbstractInsnNode actualInsn = method.instructions.getFirst();
-        for (AbstractInsnNode expectedInstruction : instructions) {
-            if (expectedInstruction.getOpcode() == -1) {
-                continue;
-            }
-            while (actualInsn != null && actualInsn.getOpcode() == -1) {
-                actualInsn = actualInsn.getNext();
-            }
-            if (actualInsn == null) {
-                return false;
-            }
-            if (actualInsn.getOpcode() != expectedInstruction.getOpcode()) {
-                return false;
-            }
-
-            if (expectedInstruction instanceof MethodInsnNode) {
-                MethodInsnNode expected = (MethodInsnNode) expectedInstruction;
-                MethodInsnNode actual = (MethodInsnNode) actualInsn;
-                if (!expected.owner.equals(actual.owner) || !expected.desc.equals(actual.desc) || (!expected.name.equals("*") && !expected.name.equals(actual.name))) {
-                    return false;
-                }
-            } else if (expectedInstruction instanceof InsnNode) {
-                // Nothing to compare - opcode was the most important thing of the instruction
-            } else if (expectedInstruction instanceof FieldInsnNode) {
-                FieldInsnNode expected = (FieldInsnNode) expectedInstruction;
-                FieldInsnNode actual = (FieldInsnNode) actualInsn;
-                if (!expected.owner.equals(actual.owner) || !expected.desc.equals(actual.desc) || (!expected.name.equals("*") && !expected.name.equals(actual.name))) {
-                    return false;
-                }
-            } else if (expectedInstruction instanceof VarInsnNode) {
-                if (((VarInsnNode) expectedInstruction).var != ((VarInsnNode) actualInsn).var) {
-                    return false;
-                }
-            } else {
-                throw new AssertionError("Cannot compare instances of class " + expectedInstruction.getClass().getName());
-            }
-            actualInsn = actualInsn.getNext();
-        }
-        return true;
-    }
-
     private AbstractInsnNode getNext(AbstractInsnNode insn) {
         insn = insn.getNext();
         while (insn.getOpcode() == -1) {
@@ -278,77 +241,16 @@ public class Autodeobf502 implements StarmappedNames502, AutodeobfRunner {
         return (T) insn;
     }
 
-    private boolean isGetter(MethodNode method, String fieldOwner, String fieldName, String fieldType, boolean staticField) {
-        AbstractInsnNode insn = method.instructions.getFirst();
-        while (insn.getOpcode() == -1) {
-            insn = insn.getNext();
-        }
-        if (!staticField) {
-            if (insn.getOpcode() != Opcodes.ALOAD) {
-                return false;
-            }
-            VarInsnNode aloadThis = (VarInsnNode) insn;
-            insn = insn.getNext();
-            while (insn.getOpcode() == -1) {
-                insn = insn.getNext();
-            }
-            if (aloadThis.var != 0 || insn.getOpcode() != Opcodes.GETFIELD) {
-                return false;
-            }
-        } else if (insn.getOpcode() != Opcodes.GETSTATIC) {
-            return false;
-        }
-        FieldInsnNode fieldInsn = (FieldInsnNode) insn;
-        insn = insn.getNext();
-        while (insn.getOpcode() == -1) {
-            insn = insn.getNext();
-        }
-        if (!isReturn(insn.getOpcode())) {
-            return false;
-        }
-        if (fieldInsn.owner.equals(fieldOwner) && fieldInsn.name.equals(fieldName) && fieldInsn.desc.equals(fieldType)) {
-            return true;
-        }
-        return false;
-    }
-
     private boolean isInstanceofClass(ClassNode node, String type) {
-        if (node == null) {
-            return false;
-        }
-        if (node.name.equals(type)) {
-            return true;
-        }
-        return isInstanceofClass(name2Node.get(node.superName), type);
+        return this.hierarchy.isSubclass(node, type);
     }
 
     private boolean isInstanceofInterface(ClassNode node, String type) {
-        if (node == null) {
-            return false;
-        }
-        if (node.name.equals(type)) {
-            return true;
-        }
-        for (String interfaceName : node.interfaces) {
-            if (isInstanceofClass(name2Node.get(interfaceName), type)) {
-                return true;
-            }
-        }
-        if (node.superName != null) {
-            return isInstanceofInterface(name2Node.get(node.superName), type);
-        }
-        return false;
+        return this.hierarchy.isSubtype(node, type);
     }
 
     private boolean isInstanceofWidget(ClassNode node) {
-        // Bit more performant than #isInstanceofClass, probably
-        if (node == null) {
-            return false;
-        }
-        if (node.name.equals(WIDGET_CLASS)) {
-            return true;
-        }
-        return isInstanceofWidget(name2Node.get(node.superName));
+        return this.hierarchy.isSubclass(node, WIDGET_CLASS);
     }
 
     private boolean isReturn(int opcode) {
@@ -365,44 +267,6 @@ public class Autodeobf502 implements StarmappedNames502, AutodeobfRunner {
         }
     }
 
-    private boolean isSetter(MethodNode method, String fieldOwner, String fieldName, String fieldType) {
-        AbstractInsnNode insn = method.instructions.getFirst();
-        while (insn.getOpcode() == -1) {
-            insn = insn.getNext();
-        }
-        if (insn.getOpcode() != Opcodes.ALOAD) {
-            return false;
-        }
-        VarInsnNode aloadThis = (VarInsnNode) insn;
-        insn = insn.getNext();
-        while (insn.getOpcode() == -1) {
-            insn = insn.getNext();
-        }
-        if (aloadThis.var != 0 || insn.getOpcode() != Opcodes.ALOAD) {
-            return false;
-        }
-        VarInsnNode aloadOne = (VarInsnNode) insn;
-        insn = insn.getNext();
-        while (insn.getOpcode() == -1) {
-            insn = insn.getNext();
-        }
-        if (aloadOne.var != 1 || insn.getOpcode() != Opcodes.PUTFIELD) {
-            return false;
-        }
-        FieldInsnNode fieldInsn = (FieldInsnNode) insn;
-        insn = insn.getNext();
-        while (insn.getOpcode() == -1) {
-            insn = insn.getNext();
-        }
-        if (insn.getOpcode() != Opcodes.RETURN) {
-            return false;
-        }
-        if (fieldInsn.owner.equals(fieldOwner) && fieldInsn.name.equals(fieldName) && fieldInsn.desc.equals(fieldType)) {
-            return true;
-        }
-        return false;
-    }
-
     public void remapActorClasses(Writer mappingsStream) throws IOException {
         ClassNode spaceNode = name2Node.get(SPACE_CLASS);
         if (spaceNode == null) {
@@ -593,21 +457,16 @@ public class Autodeobf502 implements StarmappedNames502, AutodeobfRunner {
         String landmarkManagerClass = null;
         String regenerateLandmarksMethod = null;
 
-        nodeLoop:
-        for (ClassNode node : this.nodes) {
-            if (node.name.startsWith(GUIDES_PACKAGE)) {
-                for (MethodNode method : node.methods) {
-                    for (AbstractInsnNode insn = method.instructions.getFirst(); insn != null; insn = insn.getNext()) {
-                        if (insn.getOpcode() == Opcodes.LDC && ((LdcInsnNode) insn).cst.equals("Picking landmarks")) {
-                            landmarkManagerClass = node.name;
-                            regenerateLandmarksMethod = method.name;
-                            if (!method.desc.equals("()V")) {
-                                throw new OutdatedDeobfuscatorException("Guides", LANDMARK_MANAGER_CLASS, "regenerateLandmarks", "Unexpected descriptor");
-                            }
-                            continue nodeLoop;
-                        }
-                    }
-                }
+        ClassNode landmarkManagerNode = null;
+        for (BytecodeIndex.MethodLocation location : this.index.getMethodsWithLdc("Picking landmarks")) {
+            if (location.owner == landmarkManagerNode || !location.owner.name.startsWith(GUIDES_PACKAGE)) {
+                continue;
+            }
+            landmarkManagerNode = location.owner;
+            landmarkManagerClass = location.owner.name;
+            regenerateLandmarksMethod = location.method.name;
+            if (!location.method.desc.equals("()V")) {
+                throw new OutdatedDeobfuscatorException("Guides", LANDMARK_MANAGER_CLASS, "regenerateLandmarks", "Unexpected descriptor");
             }
         }
 
@@ -619,6 +478,10 @@ public class Autodeobf502 implements StarmappedNames502, AutodeobfRunner {
     }
 
     private void remapClass(Writer mappingsOut, @NotNull String oldName, @NotNull String newName) throws IOException {
+        if (mappingsOut instanceof DeferredMappingsWriter) {
+            ((DeferredMappingsWriter) mappingsOut).defer((out) -> this.remapClass(out, oldName, newName));
+            return;
+        }
         remapper.remapClassName(oldName, newName);
         mappingsOut.write("CLASS ");
         mappingsOut.write(oldName);
@@ -845,10 +708,8 @@ public class Autodeobf502 implements StarmappedNames502, AutodeobfRunner {
         }
         mappingsStream.write("# End dialog package relocation\n");
 
-        for (ClassNode node : nodes) {
-            if (isInstanceofClass(node, dialogButtonClass)) {
-                remapMethod(mappingsStream, node.name, dialogButtonOnTouchMethod, "onTouch", "()V");
-            }
+        for (ClassNode node : this.hierarchy.getSubclasses(dialogButtonClass)) {
+            remapMethod(mappingsStream, node.name, dialogButtonOnTouchMethod, "onTouch", "()V");
         }
     }
 
@@ -1218,63 +1079,61 @@ public class Autodeobf502 implements StarmappedNames502, AutodeobfRunner {
 
         String mottoGeneratorClass = null;
 
-        nodeloop:
-        for (ClassNode node : nodes) {
-            for (MethodNode method : node.methods) {
-                for (AbstractInsnNode insn = method.instructions.getFirst(); insn != null; insn = insn.getNext()) {
-                    if (insn.getOpcode() == Opcodes.LDC && ((LdcInsnNode) insn).cst.equals("data/mottopreps.txt")) {
-                        if (mottoGeneratorClass != null) {
-                            throw new OutdatedDeobfuscatorException("Empire", MOTTO_GENERATOR_CLASS, "*", "Collision");
-                        }
-                        mottoGeneratorClass = node.name;
-                        remapClass(mappingsStream, node.name, MOTTO_GENERATOR_CLASS);
-                        remapMethod(mappingsStream, node.name, method.name, "initialize", method.desc);
-                        FieldInsnNode finsn = getNext(insn, Opcodes.PUTSTATIC);
-                        if (!finsn.owner.equals(node.name) || !finsn.desc.equals("L" + WORDLIST_CLASS + ";")) {
-                            throw new OutdatedDeobfuscatorException("Empire", MOTTO_GENERATOR_CLASS, "prepositions", "Unexpected owner or descriptor");
-                        }
-                        remapField(mappingsStream, node.name, finsn.name, "prepositions", "L" + WORDLIST_CLASS + ";");
-                        finsn = getNext(finsn, Opcodes.PUTSTATIC);
-                        if (!finsn.owner.equals(node.name) || !finsn.desc.equals("L" + WORDLIST_CLASS + ";")) {
-                            throw new OutdatedDeobfuscatorException("Empire", MOTTO_GENERATOR_CLASS, "nouns", "Unexpected owner or descriptor");
-                        }
-                        remapField(mappingsStream, node.name, finsn.name, "nouns", "L" + WORDLIST_CLASS + ";");
-                        if (getNextOrNull(finsn, Opcodes.PUTSTATIC) != null) {
-                            throw new OutdatedDeobfuscatorException("Empire", MOTTO_GENERATOR_CLASS, "nouns", "Unexpected trailing PUTSTATIC call");
-                        }
-                        MethodNode candidate = null;
-                        for (MethodNode method2 : node.methods) {
-                            if (method2.desc.equals("()Ljava/lang/String;")) {
-                                if (candidate != null) {
-                                    throw new OutdatedDeobfuscatorException("Empire", MOTTO_GENERATOR_CLASS, "generateMotto", "Collision");
-                                }
-                                candidate = method2;
-                            }
-                        }
-                        if (candidate == null) {
-                            throw new OutdatedDeobfuscatorException("Empire", MOTTO_GENERATOR_CLASS, "generateMotto", "Not found");
-                        }
-                        remapMethod(mappingsStream, node.name, candidate.name, "generateMotto", "()Ljava/lang/String;");
-                        insn = candidate.instructions.getFirst();
-                        MethodInsnNode minsn = getNext(insn, Opcodes.INVOKEVIRTUAL);
-                        if (!minsn.owner.equals(VANITY_HOLDER_CLASS) || !minsn.desc.equals("()Z")) {
-                            throw new OutdatedDeobfuscatorException("Empire", VANITY_HOLDER_CLASS, "hasMotto", "Unexpected owner or descriptor");
-                        }
-                        remapMethod(mappingsStream, VANITY_HOLDER_CLASS, minsn.name, "hasMotto", "()Z");
-                        minsn = getNext(minsn, Opcodes.INVOKEVIRTUAL);
-                        if (!minsn.owner.equals(VANITY_HOLDER_CLASS) || !minsn.desc.equals("()Ljava/lang/String;")) {
-                            throw new OutdatedDeobfuscatorException("Empire", VANITY_HOLDER_CLASS, "getMotto", "Unexpected owner or descriptor");
-                        }
-                        remapMethod(mappingsStream, VANITY_HOLDER_CLASS, minsn.name, "getMotto", "()Ljava/lang/String;");
-                        minsn = getNext(minsn, Opcodes.INVOKEVIRTUAL);
-                        if (!minsn.owner.equals(WORDLIST_CLASS) || !minsn.desc.equals("()Ljava/lang/String;")) {
-                            throw new OutdatedDeobfuscatorException("Empire", WORDLIST_CLASS, "getRandomWord", "Unexpected owner or descriptor");
-                        }
-                        remapMethod(mappingsStream, WORDLIST_CLASS, minsn.name, "getRandomWord", "()Ljava/lang/String;");
-                        continue nodeloop;
+        for (BytecodeIndex.InsnLocation location : this.index.getLdcInsns("data/mottopreps.txt")) {
+            ClassNode node = location.owner;
+            if (node.name.equals(mottoGeneratorClass)) {
+                continue;
+            }
+            MethodNode method = location.method;
+            AbstractInsnNode insn = location.insn;
+            if (mottoGeneratorClass != null) {
+                throw new OutdatedDeobfuscatorException("Empire", MOTTO_GENERATOR_CLASS, "*", "Collision");
+            }
+            mottoGeneratorClass = node.name;
+            remapClass(mappingsStream, node.name, MOTTO_GENERATOR_CLASS);
+            remapMethod(mappingsStream, node.name, method.name, "initialize", method.desc);
+            FieldInsnNode finsn = getNext(insn, Opcodes.PUTSTATIC);
+            if (!finsn.owner.equals(node.name) || !finsn.desc.equals("L" + WORDLIST_CLASS + ";")) {
+                throw new OutdatedDeobfuscatorException("Empire", MOTTO_GENERATOR_CLASS, "prepositions", "Unexpected owner or descriptor");
+            }
+            remapField(mappingsStream, node.name, finsn.name, "prepositions", "L" + WORDLIST_CLASS + ";");
+            finsn = getNext(finsn, Opcodes.PUTSTATIC);
+            if (!finsn.owner.equals(node.name) || !finsn.desc.equals("L" + WORDLIST_CLASS + ";")) {
+                throw new OutdatedDeobfuscatorException("Empire", MOTTO_GENERATOR_CLASS, "nouns", "Unexpected owner or descriptor");
+            }
+            remapField(mappingsStream, node.name, finsn.name, "nouns", "L" + WORDLIST_CLASS + ";");
+            if (getNextOrNull(finsn, Opcodes.PUTSTATIC) != null) {
+                throw new OutdatedDeobfuscatorException("Empire", MOTTO_GENERATOR_CLASS, "nouns", "Unexpected trailing PUTSTATIC call");
+            }
+            MethodNode candidate = null;
+            for (MethodNode method2 : node.methods) {
+                if (method2.desc.equals("()Ljava/lang/String;")) {
+                    if (candidate != null) {
+                        throw new OutdatedDeobfuscatorException("Empire", MOTTO_GENERATOR_CLASS, "generateMotto", "Collision");
                     }
+                    candidate = method2;
                 }
             }
+            if (candidate == null) {
+                throw new OutdatedDeobfuscatorException("Empire", MOTTO_GENERATOR_CLASS, "generateMotto", "Not found");
+            }
+            remapMethod(mappingsStream, node.name, candidate.name, "generateMotto", "()Ljava/lang/String;");
+            insn = candidate.instructions.getFirst();
+            MethodInsnNode minsn = getNext(insn, Opcodes.INVOKEVIRTUAL);
+            if (!minsn.owner.equals(VANITY_HOLDER_CLASS) || !minsn.desc.equals("()Z")) {
+                throw new OutdatedDeobfuscatorException("Empire", VANITY_HOLDER_CLASS, "hasMotto", "Unexpected owner or descriptor");
+            }
+            remapMethod(mappingsStream, VANITY_HOLDER_CLASS, minsn.name, "hasMotto", "()Z");
+            minsn = getNext(minsn, Opcodes.INVOKEVIRTUAL);
+            if (!minsn.owner.equals(VANITY_HOLDER_CLASS) || !minsn.desc.equals("()Ljava/lang/String;")) {
+                throw new OutdatedDeobfuscatorException("Empire", VANITY_HOLDER_CLASS, "getMotto", "Unexpected owner or descriptor");
+            }
+            remapMethod(mappingsStream, VANITY_HOLDER_CLASS, minsn.name, "getMotto", "()Ljava/lang/String;");
+            minsn = getNext(minsn, Opcodes.INVOKEVIRTUAL);
+            if (!minsn.owner.equals(WORDLIST_CLASS) || !minsn.desc.equals("()Ljava/lang/String;")) {
+                throw new OutdatedDeobfuscatorException("Empire", WORDLIST_CLASS, "getRandomWord", "Unexpected owner or descriptor");
+            }
+            remapMethod(mappingsStream, WORDLIST_CLASS, minsn.name, "getRandomWord", "()Ljava/lang/String;");
         }
 
         if (mottoGeneratorClass == null) {
@@ -1470,12 +1329,13 @@ public class Autodeobf502 implements StarmappedNames502, AutodeobfRunner {
         remapField(mappingsStream, JOB_CLASS, previousHolder, "previousHolder", "L" + PERSON_CLASS + ";");
 
         String getPreviousHolder = null;
+        InsnPattern previousHolderGetter = InsnPattern.getter(JOB_CLASS, previousHolder, "L" + PERSON_CLASS + ";", false);
 
         for (MethodNode method : jobNode.methods) {
             if (!method.desc.equals("()L" + PERSON_CLASS + ";") || (method.access & Opcodes.ACC_PUBLIC) == 0) {
                 continue;
             }
-            if (isGetter(method, JOB_CLASS, previousHolder, "L" + PERSON_CLASS + ";", false)) {
+            if (previousHolderGetter.matches(method)) {
                 getPreviousHolder = method.name;
                 break;
             }
@@ -1514,6 +1374,10 @@ public class Autodeobf502 implements StarmappedNames502, AutodeobfRunner {
     }
 
     private void remapField(Writer mappingsOut, String owner, String oldName, String newName, String desc) throws IOException {
+        if (mappingsOut instanceof DeferredMappingsWriter) {
+            ((DeferredMappingsWriter) mappingsOut).defer((out) -> this.remapField(out, owner, oldName, newName, desc));
+            return;
+        }
         remapper.remapField(owner, desc, oldName, newName);
         // Format: FIELD owner descriptor originalName newName
         mappingsOut.write("FIELD " + owner + " " + desc + " " + oldName + " " +  newName + "\n");
@@ -1651,7 +1515,7 @@ public class Autodeobf502 implements StarmappedNames502, AutodeobfRunner {
                     }
                 }
             } else if (method.desc.equals("()Ljava/util/List;")) {
-                if (contentsEqual(method, BITMAP_STAR_GENERATOR_GET_RESOURCES_LIST_METHOD_CONTENTS)) {
+                if (BITMAP_STAR_GENERATOR_GET_RESOURCES_LIST_METHOD_CONTENTS.matches(method)) {
                     if (getResourceListMethod != null) {
                         throw new OutdatedDeobfuscatorException("Generator", BITMAP_STAR_GENERATOR_CLASS, "getResources", "Collision");
                     }
@@ -1707,14 +1571,15 @@ public class Autodeobf502 implements StarmappedNames502, AutodeobfRunner {
         }
 
         String getMaxXMethod = null;
+        InsnPattern getMaxXPattern = InsnPattern.compile(new VarInsnNode(Opcodes.ALOAD, 0),
+                new MethodInsnNode(Opcodes.INVOKEVIRTUAL, BITMAP_STAR_GENERATOR_CLASS, getMaxYMethod, "()F"),
+                new FieldInsnNode(Opcodes.GETSTATIC, SPACE_CLASS, InsnPattern.WILDCARD, "F"),
+                new InsnNode(Opcodes.FMUL),
+                new InsnNode(Opcodes.FRETURN));
 
         for (MethodNode method : bitmapGenClass.methods) {
             if (method.desc.equals("()F")) {
-                if (contentsEqual(method, new VarInsnNode(Opcodes.ALOAD, 0),
-                        new MethodInsnNode(Opcodes.INVOKEVIRTUAL, BITMAP_STAR_GENERATOR_CLASS, getMaxYMethod, "()F"),
-                        new FieldInsnNode(Opcodes.GETSTATIC, SPACE_CLASS, "*", "F"),
-                        new InsnNode(Opcodes.FMUL),
-                        new InsnNode(Opcodes.FRETURN))) {
+                if (getMaxXPattern.matches(method)) {
                     if (getMaxXMethod != null) {
                         throw new OutdatedDeobfuscatorException("Generator", BITMAP_STAR_GENERATOR_CLASS, "getMaxX", "Collision");
                     }
@@ -1905,13 +1770,14 @@ public class Autodeobf502 implements StarmappedNames502, AutodeobfRunner {
                         if (onLoadMethod != null) {
                             throw new OutdatedDeobfuscatorException("Generator", STAR_GENERATOR_INTERFACE, "onLoad", "Collision (1520)");
                         }
+                        InsnPattern onLoadPattern = InsnPattern.compile(new VarInsnNode(Opcodes.ALOAD, 0),
+                                new MethodInsnNode(Opcodes.INVOKEVIRTUAL, FRACTAL_STAR_GENERATOR_CLASS, method.name, "()V"),
+                                new InsnNode(Opcodes.RETURN));
                         for (MethodNode method2 : fractalStarGenerator.methods) {
                             if (!method2.desc.equals("()V")) {
                                 continue;
                             }
-                            if (contentsEqual(method2, new VarInsnNode(Opcodes.ALOAD, 0),
-                                    new MethodInsnNode(Opcodes.INVOKEVIRTUAL, FRACTAL_STAR_GENERATOR_CLASS, method.name, "()V"),
-                                    new InsnNode(Opcodes.RETURN))) {
+                            if (onLoadPattern.matches(method2)) {
                                 if (onLoadMethod != null) {
                                     throw new OutdatedDeobfuscatorException("Generator", STAR_GENERATOR_INTERFACE, "onLoad", "Collision (1530)");
                                 }
@@ -1945,6 +1811,16 @@ public class Autodeobf502 implements StarmappedNames502, AutodeobfRunner {
         String getSettingsDialogDesc = null;
         String hasMovingStarsMethod = null;
 
+        for (BytecodeIndex.InsnLocation location : this.index.getLdcInsns("Planet count")) {
+            if (location.owner.name.startsWith(PROCEDURAL_STAR_GENERATOR_CLASS + "$") && location.method.desc.startsWith("()L")) {
+                if (getSettingsDialogMethod != null) {
+                    throw new OutdatedDeobfuscatorException("Generator", STAR_GENERATOR_INTERFACE, "getSettingsDialog", "Collision");
+                }
+                getSettingsDialogMethod = location.method.name;
+                getSettingsDialogDesc = location.method.desc;
+            }
+        }
+
         for (ClassNode node : nodes) {
             if (node.name.startsWith(PROCEDURAL_STAR_GENERATOR_CLASS + "$")) {
                 boolean movingSpiral = false;
@@ -1954,21 +1830,11 @@ public class Autodeobf502 implements StarmappedNames502, AutodeobfRunner {
                         break;
                     }
                 }
+                if (!movingSpiral) {
+                    continue;
+                }
                 for (MethodNode method : node.methods) {
-                    if (method.desc.startsWith("()L")) {
-                        for (AbstractInsnNode insn = method.instructions.getFirst(); insn != null; insn = insn.getNext()) {
-                            if (insn.getOpcode() == Opcodes.LDC) {
-                                LdcInsnNode ldcInsn = (LdcInsnNode) insn;
-                                if (ldcInsn.cst.equals("Planet count")) {
-                                    if (getSettingsDialogMethod != null) {
-                                        throw new OutdatedDeobfuscatorException("Generator", STAR_GENERATOR_INTERFACE, "getSettingsDialog", "Collision");
-                                    }
-                                    getSettingsDialogMethod = method.name;
-                                    getSettingsDialogDesc = method.desc;
-                                }
-                            }
-                        }
-                    } else if (movingSpiral && method.desc.equals("()Z")) {
+                    if (method.desc.equals("()Z")) {
                         if (hasMovingStarsMethod != null) {
                             throw new OutdatedDeobfuscatorException("Generator", STAR_GENERATOR_INTERFACE, "hasMovingStars", "Collision");
                         }
@@ -1985,20 +1851,18 @@ public class Autodeobf502 implements StarmappedNames502, AutodeobfRunner {
             throw new OutdatedDeobfuscatorException("Generator", STAR_GENERATOR_INTERFACE, "hasMovingStars", "Not found");
         }
 
-        for (ClassNode node : nodes) {
-            if (isInstanceofInterface(node, starGeneratorClass)) {
-                remapMethod(mappingsStream, node.name, generateStarMethod, "generateStar", "()L" + STAR_CLASS + ";");
-                remapMethod(mappingsStream, node.name, getResourceListMethod, "getResources", "()Ljava/util/List;");
-                remapMethod(mappingsStream, node.name, getMaxXMethod, "getMaxX", "()F");
-                remapMethod(mappingsStream, node.name, getMaxYMethod, "getMaxY", "()F");
-                remapMethod(mappingsStream, node.name, prepareGeneratorMethod, "prepareGenerator", "()V");
-                remapMethod(mappingsStream, node.name, getEngravingTextMethod, "getEngravingText", "()Ljava/lang/String;");
-                remapMethod(mappingsStream, node.name, getSettingsDialogMethod, "getSettingsDialog", getSettingsDialogDesc);
-                remapMethod(mappingsStream, node.name, hasMovingStarsMethod, "hasMovingStars", "()Z");
-                remapMethod(mappingsStream, node.name, setupSettingsMethod, "setupSettings", "()V");
-                remapMethod(mappingsStream, node.name, onLoadMethod, "onLoad", "()V");
-                remapMethod(mappingsStream, node.name, getBackgroundTextureMethod, "getBackgroundTexture", "()Lcom/badlogic/gdx/graphics/Texture;");
-            }
+        for (ClassNode node : this.hierarchy.getSubtypes(starGeneratorClass)) {
+            remapMethod(mappingsStream, node.name, generateStarMethod, "generateStar", "()L" + STAR_CLASS + ";");
+            remapMethod(mappingsStream, node.name, getResourceListMethod, "getResources", "()Ljava/util/List;");
+            remapMethod(mappingsStream, node.name, getMaxXMethod, "getMaxX", "()F");
+            remapMethod(mappingsStream, node.name, getMaxYMethod, "getMaxY", "()F");
+            remapMethod(mappingsStream, node.name, prepareGeneratorMethod, "prepareGenerator", "()V");
+            remapMethod(mappingsStream, node.name, getEngravingTextMethod, "getEngravingText", "()Ljava/lang/String;");
+            remapMethod(mappingsStream, node.name, getSettingsDialogMethod, "getSettingsDialog", getSettingsDialogDesc);
+            remapMethod(mappingsStream, node.name, hasMovingStarsMethod, "hasMovingStars", "()Z");
+            remapMethod(mappingsStream, node.name, setupSettingsMethod, "setupSettings", "()V");
+            remapMethod(mappingsStream, node.name, onLoadMethod, "onLoad", "()V");
+            remapMethod(mappingsStream, node.name, getBackgroundTextureMethod, "getBackgroundTexture", "()Lcom/badlogic/gdx/graphics/Texture;");
         }
     }
 
@@ -2037,43 +1901,35 @@ public class Autodeobf502 implements StarmappedNames502, AutodeobfRunner {
         String aboutWidgetClass = null;
         String showShortcutListButtonClass = null;
 
-        for (ClassNode node : this.nodes) {
-            if (node.name.startsWith(UI_PACKAGE)) {
-                for (MethodNode method : node.methods) {
-                    if (!method.name.equals("<init>")) {
-                        continue;
-                    }
-                    boolean flag = false;
-                    for (AbstractInsnNode insn = method.instructions.getFirst(); insn != null; insn = insn.getNext()) {
-                        if (insn.getOpcode() != Opcodes.LDC) {
-                            continue;
-                        }
-                        LdcInsnNode ldcInsn = (LdcInsnNode) insn;
-                        if (ldcInsn.cst.equals("about")) {
-                            flag = true;
-                        } else if (flag && ldcInsn.cst.equals("{$1}")) {
-                            aboutWidgetClass = node.name;
-                            while (insn != null) {
-                                if (insn.getOpcode() == Opcodes.LDC && ((LdcInsnNode) insn).cst.equals("Keyboard shortcuts")) {
-                                    break;
-                                }
-                                insn = insn.getNext();
-                            }
-                            TypeInsnNode typeInsn = getPreviousOrNull(insn, Opcodes.NEW);
-                            if (typeInsn == null) {
-                                throw new OutdatedDeobfuscatorException("Hotkey", SHOW_SHORTCUT_LIST_BUTTON_CLASS, "*", insn == null ? "Prerequisite missing" : "No such NEW insn");
-                            }
-                            showShortcutListButtonClass = typeInsn.desc;
-                            break;
-                        } else {
+        for (BytecodeIndex.MethodLocation location : this.index.getMethodsWithLdc("about")) {
+            if (!location.owner.name.startsWith(UI_PACKAGE) || !location.method.name.equals("<init>")) {
+                continue;
+            }
+            boolean flag = false;
+            for (AbstractInsnNode insn = location.method.instructions.getFirst(); insn != null; insn = insn.getNext()) {
+                if (insn.getOpcode() != Opcodes.LDC) {
+                    continue;
+                }
+                LdcInsnNode ldcInsn = (LdcInsnNode) insn;
+                if (ldcInsn.cst.equals("about")) {
+                    flag = true;
+                } else if (flag && ldcInsn.cst.equals("{$1}")) {
+                    aboutWidgetClass = location.owner.name;
+                    while (insn != null) {
+                        if (insn.getOpcode() == Opcodes.LDC && ((LdcInsnNode) insn).cst.equals("Keyboard shortcuts")) {
                             break;
                         }
+                        insn = insn.getNext();
+                    }
+                    TypeInsnNode typeInsn = getPreviousOrNull(insn, Opcodes.NEW);
+                    if (typeInsn == null) {
+                        throw new OutdatedDeobfuscatorException("Hotkey", SHOW_SHORTCUT_LIST_BUTTON_CLASS, "*", insn == null ? "Prerequisite missing" : "No such NEW insn");
                     }
-                    
+                    showShortcutListButtonClass = typeInsn.desc;
+                    break;
+                } else {
+                    break;
                 }
-            } else if (node.name.startsWith(MAIN_ENTRYPOINT_CLASS + "$")
-                    && node.superName.equals(extendsShortcut.superName)) {
-                
             }
         }
 
@@ -2135,10 +1991,11 @@ public class Autodeobf502 implements StarmappedNames502, AutodeobfRunner {
         String rotateMapModeMethod = null;
         String setMapModeMethod = null;
         String getMapModeMethod = null;
+        InsnPattern mapModeGetter = InsnPattern.getter(MAP_MODE_CLASS, mapModeField, "L" + MAP_MODE_ENUM_CLASS + ";", true);
 
         for (MethodNode method : mapModeNode.methods) {
             if (method.desc.equals("()L" + MAP_MODE_ENUM_CLASS + ";")) {
-                if (isGetter(method, MAP_MODE_CLASS, mapModeField, "L" + MAP_MODE_ENUM_CLASS + ";", true)) {
+                if (mapModeGetter.matches(method)) {
                     if (getMapModeMethod != null) {
                         throw new OutdatedDeobfuscatorException("MapMode", MAP_MODE_CLASS, "getCurrentMode", "Collision");
                     }
@@ -2203,44 +2060,37 @@ public class Autodeobf502 implements StarmappedNames502, AutodeobfRunner {
             throw new OutdatedDeobfuscatorException("MapMode", STAR_CLASS, "renderRegion", "Unresolved");
         }
 
-        String starRenderingRegionField;
+        String starRenderingRegionField = null;
         {
-            String[] fieldName = new String[1];
-            StackWalker.walkStack(starNode, renderRegionsMethod, new StackWalkerConsumer() {
-
-                private boolean search = true;
-
-                @Override
-                public void preCalculation(AbstractInsnNode instruction, LIFOQueue<StackElement> stack) {
-                    if (search && instruction.getOpcode() == Opcodes.INVOKEVIRTUAL) {
-                        MethodInsnNode methodInsn = (MethodInsnNode) instruction;
-                        if (methodInsn.owner.equals(GDX_POLYGON_SPRITE)
-                                && methodInsn.desc.equals("(L" + GDX_COLOR_CLASS + ";)V")
-                                && methodInsn.name.equals("setColor")) {
-                            AbstractSource src = stack.getDelegateList().get(1).source;
-                            if (!(src instanceof FieldSource)) {
-                                throw new IllegalStateException("Stack walker was unable to capture source of stack element");
-                            }
-                            FieldInsnNode source = ((FieldSource) src).getInsn();
-                            if (!source.owner.equals(STAR_CLASS)) {
-                                throw new OutdatedDeobfuscatorException("MapMode", "Source of stack element is not the expected class");
-                            }
-                            if (!source.desc.equals("L" + GDX_POLYGON_SPRITE + ";")) {
-                                throw new OutdatedDeobfuscatorException("MapMode", "Source of stack element does not have the expected signature");
-                            }
-                            fieldName[0] = source.name;
-                            search = false;
-                        }
-                    }
+            StackFrameAnalysis analysis = StackFrameAnalysis.analyse(starNode, renderRegionsMethod);
+            for (AbstractInsnNode instruction = renderRegionsMethod.instructions.getFirst(); instruction != null; instruction = instruction.getNext()) {
+                if (instruction.getOpcode() != Opcodes.INVOKEVIRTUAL) {
+                    continue;
                 }
-
-                @Override
-                public void postCalculation(AbstractInsnNode instruction, LIFOQueue<StackElement> stack) {
-                    // Unneeded
+                MethodInsnNode methodInsn = (MethodInsnNode) instruction;
+                if (methodInsn.owner.equals(GDX_POLYGON_SPRITE)
+                        && methodInsn.desc.equals("(L" + GDX_COLOR_CLASS + ";)V")
+                        && methodInsn.name.equals("setColor")) {
+                    List<StackElement> stack = analysis.getStackBefore(instruction);
+                    if (stack == null) {
+                        throw new IllegalStateException("Stack walker did not visit the instruction");
+                    }
+                    AbstractSource src = stack.get(1).source;
+                    if (!(src instanceof FieldSource)) {
+                        throw new IllegalStateException("Stack walker was unable to capture source of stack element");
+                    }
+                    FieldInsnNode source = ((FieldSource) src).getInsn();
+                    if (!source.owner.equals(STAR_CLASS)) {
+                        throw new OutdatedDeobfuscatorException("MapMode", "Source of stack element is not the expected class");
+                    }
+                    if (!source.desc.equals("L" + GDX_POLYGON_SPRITE + ";")) {
+                        throw new OutdatedDeobfuscatorException("MapMode", "Source of stack element does not have the expected signature");
+                    }
+                    starRenderingRegionField = source.name;
+                    break;
                 }
-            });
+            }
 
-            starRenderingRegionField = fieldName[0];
             if (starRenderingRegionField == null) {
                 throw new OutdatedDeobfuscatorException("MapMode", STAR_CLASS, "starRenderingRegion", "Unresolved");
             }
@@ -2258,6 +2108,10 @@ public class Autodeobf502 implements StarmappedNames502, AutodeobfRunner {
         if (desc == null) {
             throw new NullPointerException("desc is null");
         }
+        if (mappingsOut instanceof DeferredMappingsWriter) {
+            ((DeferredMappingsWriter) mappingsOut).defer((out) -> this.remapMethod(out, owner, oldName, newName, desc));
+            return;
+        }
         try {
             this.remapper.remapMethod(owner, desc, oldName, newName);
             // Format (for valid tiny files): METHOD owner desc srcName dstName
@@ -2639,55 +2493,48 @@ public class Autodeobf502 implements StarmappedNames502, AutodeobfRunner {
         }
 
         ClassNode renderCacheCollectorClass = null;
-        for (ClassNode node : nodes) {
+        for (BytecodeIndex.InsnLocation location : this.index.getMethodInsns(SPACE_CLASS, drawToCacheMethodDesc)) {
+            ClassNode node = location.owner;
+            if (node == renderCacheCollectorClass
+                    || location.insn.getOpcode() != Opcodes.INVOKESTATIC
+                    || !((MethodInsnNode) location.insn).name.equals(drawToCacheMethod)) {
+                continue;
+            }
             if (node.interfaces.size() != 1 || !node.interfaces.get(0).equals("java/lang/Runnable")) {
                 continue;
             }
-            methodLoop:
-            for (MethodNode method : node.methods) {
-                if (!method.name.equals("run") || !method.desc.equals("()V")) {
-                    continue;
-                }
-                for (AbstractInsnNode insn : method.instructions) {
-                    if (insn.getOpcode() != Opcodes.INVOKESTATIC) {
-                        continue;
-                    }
-                    MethodInsnNode methodInsn = (MethodInsnNode) insn;
-                    if (!methodInsn.owner.equals(SPACE_CLASS) || !methodInsn.name.equals(drawToCacheMethod) || !methodInsn.desc.equals(drawToCacheMethodDesc)) {
-                        continue;
-                    }
+            if (!location.method.name.equals("run") || !location.method.desc.equals("()V")) {
+                continue;
+            }
 
-                    remapClass(mappingsStream, node.name, RENDER_CACHE_COLLECTOR_CLASS);
+            remapClass(mappingsStream, node.name, RENDER_CACHE_COLLECTOR_CLASS);
 
-                    ClassNode galemulatorClass = null;
-                    for (ClassNode node2 : nodes) {
-                        if (node2.interfaces.size() != 1 || !node2.interfaces.get(0).equals("com/badlogic/gdx/ApplicationListener") || !node2.name.startsWith(BASE_PACKAGE)) {
-                            continue;
-                        }
-                        if (galemulatorClass != null) {
-                            throw new OutdatedDeobfuscatorException("RenderSystem", "Two galemulator classes found");
-                        }
-                        galemulatorClass = node2;
-                    }
+            ClassNode galemulatorClass = null;
+            for (ClassNode node2 : nodes) {
+                if (node2.interfaces.size() != 1 || !node2.interfaces.get(0).equals("com/badlogic/gdx/ApplicationListener") || !node2.name.startsWith(BASE_PACKAGE)) {
+                    continue;
+                }
+                if (galemulatorClass != null) {
+                    throw new OutdatedDeobfuscatorException("RenderSystem", "Two galemulator classes found");
+                }
+                galemulatorClass = node2;
+            }
 
-                    if (galemulatorClass == null) {
-                        throw new OutdatedDeobfuscatorException("RenderSystem", "No galemulator class found");
-                    }
+            if (galemulatorClass == null) {
+                throw new OutdatedDeobfuscatorException("RenderSystem", "No galemulator class found");
+            }
 
-                    node.outerClass = galemulatorClass.name;
-                    node.innerClasses.removeIf(icn -> icn.name.equals(node.name));
-                    galemulatorClass.innerClasses.removeIf(icn -> icn.name.equals(node.name));
-                    InnerClassNode icn = new InnerClassNode(node.name, galemulatorClass.name, "RenderCacheCollector", Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC);
-                    node.innerClasses.add(icn);
-                    galemulatorClass.innerClasses.add(icn);
+            node.outerClass = galemulatorClass.name;
+            node.innerClasses.removeIf(icn -> icn.name.equals(node.name));
+            galemulatorClass.innerClasses.removeIf(icn -> icn.name.equals(node.name));
+            InnerClassNode icn = new InnerClassNode(node.name, galemulatorClass.name, "RenderCacheCollector", Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC);
+            node.innerClasses.add(icn);
+            galemulatorClass.innerClasses.add(icn);
 
-                    if (renderCacheCollectorClass != null) {
-                        throw new OutdatedDeobfuscatorException("RenderSystem", RENDER_CACHE_COLLECTOR_CLASS, "*", "Collision");
-                    }
-                    renderCacheCollectorClass = node;
-                    break methodLoop;
-                }
+            if (renderCacheCollectorClass != null) {
+                throw new OutdatedDeobfuscatorException("RenderSystem", RENDER_CACHE_COLLECTOR_CLASS, "*", "Collision");
             }
+            renderCacheCollectorClass = node;
         }
 
         if (renderCacheCollectorClass == null) {
@@ -3209,8 +3056,9 @@ public class Autodeobf502 implements StarmappedNames502, AutodeobfRunner {
         remapMethod(mappingsStream, SPACE_CLASS, signPeaceMethod, "signPeace", "(L" + EMPIRE_CLASS + ";L" + EMPIRE_CLASS + ";)V");
 
         boolean foundIsPaused = false;
+        InsnPattern pausedGetter = InsnPattern.getter(SPACE_CLASS, pausedField, "Z", true);
         for (MethodNode method : space.methods) {
-            if (!foundIsPaused && (method.access & Opcodes.ACC_PUBLIC) != 0 && method.desc.equals("()Z") && isGetter(method, SPACE_CLASS, pausedField, "Z", true)) {
+            if (!foundIsPaused && (method.access & Opcodes.ACC_PUBLIC) != 0 && method.desc.equals("()Z") && pausedGetter.matches(method)) {
                 remapMethod(mappingsStream, SPACE_CLASS, method.name, "isPaused", "()Z");
                 foundIsPaused = true;
             }
@@ -3222,37 +3070,29 @@ public class Autodeobf502 implements StarmappedNames502, AutodeobfRunner {
 
         boolean foundSaveStackdepth = false;
 
-        for (ClassNode node : nodes) {
-            if (node.interfaces.size() == 1 && node.interfaces.get(0).equals("java/lang/Runnable")) {
-                for (MethodNode method : node.methods) {
-                    if (method.name.equals("run") && method.desc.equals("()V")) {
-                        insn = method.instructions.getFirst();
-                        while (insn != null) {
-                            if (insn.getOpcode() == Opcodes.LDC && ((LdcInsnNode) insn).cst.equals("Restored from disk, stack depth was: ")) {
-                                break;
-                            }
-                            insn = insn.getNext();
-                        }
-                        if (insn == null) {
-                            break;
-                        }
-                        insn = insn.getNext().getNext();
-                        if (insn.getOpcode() != Opcodes.GETSTATIC) {
-                            throw new OutdatedDeobfuscatorException("Space", SPACE_CLASS, "saveStackdepth", "Follow-up instruction has wrong opcode");
-                        }
-                        FieldInsnNode fieldInsn = (FieldInsnNode) insn;
-                        if (!fieldInsn.owner.equals(SPACE_CLASS) || !fieldInsn.desc.equals("I")) {
-                            throw new OutdatedDeobfuscatorException("Space", SPACE_CLASS, "saveStackdepth", "Follow-up instruction has wrong owner class or descriptor");
-                        }
-                        remapField(mappingsStream, SPACE_CLASS, fieldInsn.name, "saveStackdepth", "I");
-                        if (foundSaveStackdepth) {
-                            throw new OutdatedDeobfuscatorException("Space", SPACE_CLASS, "saveStackdepth", "Collision");
-                        }
-                        foundSaveStackdepth = true;
-                        break;
-                    }
-                }
+        MethodNode saveStackdepthMethod = null;
+        for (BytecodeIndex.InsnLocation location : this.index.getLdcInsns("Restored from disk, stack depth was: ")) {
+            ClassNode node = location.owner;
+            if (location.method == saveStackdepthMethod || node.interfaces.size() != 1 || !node.interfaces.get(0).equals("java/lang/Runnable")) {
+                continue;
             }
+            if (!location.method.name.equals("run") || !location.method.desc.equals("()V")) {
+                continue;
+            }
+            saveStackdepthMethod = location.method;
+            insn = location.insn.getNext().getNext();
+            if (insn.getOpcode() != Opcodes.GETSTATIC) {
+                throw new OutdatedDeobfuscatorException("Space", SPACE_CLASS, "saveStackdepth", "Follow-up instruction has wrong opcode");
+            }
+            FieldInsnNode fieldInsn = (FieldInsnNode) insn;
+            if (!fieldInsn.owner.equals(SPACE_CLASS) || !fieldInsn.desc.equals("I")) {
+                throw new OutdatedDeobfuscatorException("Space", SPACE_CLASS, "saveStackdepth", "Follow-up instruction has wrong owner class or descriptor");
+            }
+            remapField(mappingsStream, SPACE_CLASS, fieldInsn.name, "saveStackdepth", "I");
+            if (foundSaveStackdepth) {
+                throw new OutdatedDeobfuscatorException("Space", SPACE_CLASS, "saveStackdepth", "Collision");
+            }
+            foundSaveStackdepth = true;
         }
 
         if (!foundSaveStackdepth) {
@@ -3268,125 +3108,115 @@ public class Autodeobf502 implements StarmappedNames502, AutodeobfRunner {
         String getWarDisplayAgeMethod = null;
         String widgetGetInnerWidthMethod = null;
 
-        nodeLoop:
-        for (ClassNode node : nodes) {
-            if (!node.name.startsWith(UI_PACKAGE)) {
+        for (BytecodeIndex.InsnLocation location : this.index.getFieldInsns(SPACE_CLASS, "Ljava/util/Vector;")) {
+            ClassNode node = location.owner;
+            MethodNode method = location.method;
+            if (node == warListWidgetNode || !node.name.startsWith(UI_PACKAGE) || !method.desc.equals("()V")) {
                 continue;
             }
-            for (MethodNode method : node.methods) {
-                if (!method.desc.equals("()V")) {
+            insn = location.insn;
+            if (insn.getOpcode() != Opcodes.GETSTATIC) {
+                continue;
+            }
+            FieldInsnNode fieldInsn = (FieldInsnNode) insn;
+            if (!fieldInsn.name.equals(warsField)) {
+                continue;
+            }
+            if (warListWidgetNode != null) {
+                throw new OutdatedDeobfuscatorException("Space", WAR_LIST_WIDGET_CLASS, "*", "Collision");
+            }
+            warListWidgetNode = node;
+            warListWidgetPopulateMethod = method.name;
+            while ((insn = insn.getNext()) != null) {
+                if (insn.getOpcode() != Opcodes.NEW) {
                     continue;
                 }
-                for (insn = method.instructions.getFirst(); insn != null; insn = insn.getNext()) {
-                    if (insn.getOpcode() != Opcodes.GETSTATIC) {
-                        continue;
-                    }
-                    FieldInsnNode fieldInsn = (FieldInsnNode) insn;
-                    if (!fieldInsn.name.equals(warsField)
-                            || !fieldInsn.owner.equals(SPACE_CLASS)
-                            || !fieldInsn.desc.equals("Ljava/util/Vector;")) {
-                        continue;
-                    }
-                    if (warListWidgetNode != null) {
-                        throw new OutdatedDeobfuscatorException("Space", WAR_LIST_WIDGET_CLASS, "*", "Collision");
-                    }
-                    warListWidgetNode = node;
-                    warListWidgetPopulateMethod = method.name;
-                    while ((insn = insn.getNext()) != null) {
-                        if (insn.getOpcode() != Opcodes.NEW) {
-                            continue;
-                        }
-                        warListEntryClass = ((TypeInsnNode) insn).desc;
-                        insn = insn.getNext();
-                        break;
-                    }
-                    while (insn != null) {
-                        if (insn.getOpcode() != Opcodes.INVOKEVIRTUAL) {
-                            insn = insn.getNext();
-                            continue;
-                        }
-                        MethodInsnNode methodInsn = (MethodInsnNode) insn;
-                        if (!methodInsn.owner.equals(WAR_CLASS) || !methodInsn.desc.equals("()Ljava/lang/String;")) {
-                            throw new OutdatedDeobfuscatorException("Space", WAR_CLASS, "getWarName", "Invalid owner or descriptor");
-                        }
-                        getWarNameMethod = methodInsn.name;
-                        insn = insn.getNext();
-                        break;
-                    }
-                    while (insn != null) {
-                        if (insn.getOpcode() != Opcodes.INVOKEVIRTUAL
-                                || ((MethodInsnNode) insn).owner.equals("java/lang/StringBuilder")) {
-                            insn = insn.getNext();
-                            continue;
-                        }
-                        MethodInsnNode methodInsn = (MethodInsnNode) insn;
-                        if (!methodInsn.owner.equals(WAR_CLASS) || !methodInsn.desc.equals("()Ljava/lang/String;")) {
-                            throw new OutdatedDeobfuscatorException("Space", WAR_CLASS, "getDisplayScore", "Invalid owner or descriptor");
-                        }
-                        getWarDisplayScoreMethod = methodInsn.name;
-                        insn = insn.getNext();
-                        break;
-                    }
-                    while (insn != null) {
-                        if (insn.getOpcode() != Opcodes.INVOKEVIRTUAL
-                                || ((MethodInsnNode) insn).owner.equals("java/lang/StringBuilder")) {
-                            insn = insn.getNext();
-                            continue;
-                        }
-                        MethodInsnNode methodInsn = (MethodInsnNode) insn;
-                        if (!methodInsn.owner.equals(WAR_CLASS) || !methodInsn.desc.equals("()Ljava/lang/String;")) {
-                            throw new OutdatedDeobfuscatorException("Space", WAR_CLASS, "getDisplayAge", "Invalid owner or descriptor");
-                        }
-                        getWarDisplayAgeMethod = methodInsn.name;
-                        insn = insn.getNext();
-                        break;
+                warListEntryClass = ((TypeInsnNode) insn).desc;
+                insn = insn.getNext();
+                break;
+            }
+            while (insn != null) {
+                if (insn.getOpcode() != Opcodes.INVOKEVIRTUAL) {
+                    insn = insn.getNext();
+                    continue;
+                }
+                MethodInsnNode methodInsn = (MethodInsnNode) insn;
+                if (!methodInsn.owner.equals(WAR_CLASS) || !methodInsn.desc.equals("()Ljava/lang/String;")) {
+                    throw new OutdatedDeobfuscatorException("Space", WAR_CLASS, "getWarName", "Invalid owner or descriptor");
+                }
+                getWarNameMethod = methodInsn.name;
+                insn = insn.getNext();
+                break;
+            }
+            while (insn != null) {
+                if (insn.getOpcode() != Opcodes.INVOKEVIRTUAL
+                        || ((MethodInsnNode) insn).owner.equals("java/lang/StringBuilder")) {
+                    insn = insn.getNext();
+                    continue;
+                }
+                MethodInsnNode methodInsn = (MethodInsnNode) insn;
+                if (!methodInsn.owner.equals(WAR_CLASS) || !methodInsn.desc.equals("()Ljava/lang/String;")) {
+                    throw new OutdatedDeobfuscatorException("Space", WAR_CLASS, "getDisplayScore", "Invalid owner or descriptor");
+                }
+                getWarDisplayScoreMethod = methodInsn.name;
+                insn = insn.getNext();
+                break;
+            }
+            while (insn != null) {
+                if (insn.getOpcode() != Opcodes.INVOKEVIRTUAL
+                        || ((MethodInsnNode) insn).owner.equals("java/lang/StringBuilder")) {
+                    insn = insn.getNext();
+                    continue;
+                }
+                MethodInsnNode methodInsn = (MethodInsnNode) insn;
+                if (!methodInsn.owner.equals(WAR_CLASS) || !methodInsn.desc.equals("()Ljava/lang/String;")) {
+                    throw new OutdatedDeobfuscatorException("Space", WAR_CLASS, "getDisplayAge", "Invalid owner or descriptor");
+                }
+                getWarDisplayAgeMethod = methodInsn.name;
+                insn = insn.getNext();
+                break;
+            }
+            while (insn != null) {
+                if (insn.getOpcode() != Opcodes.INVOKEVIRTUAL
+                        || !((MethodInsnNode) insn).owner.equals(node.name)) {
+                    insn = insn.getNext();
+                    continue;
+                }
+                if (!((MethodInsnNode) insn).desc.equals("()I")) {
+                    throw new OutdatedDeobfuscatorException("Space", WIDGET_CLASS, "getInnerWidth", "Invalid descriptor");
+                }
+                widgetGetInnerWidthMethod = ((MethodInsnNode) insn).name;
+                insn = insn.getNext();
+                break;
+            }
+            while (insn != null) {
+                if (insn.getOpcode() != Opcodes.NEW) {
+                    insn = insn.getNext();
+                    continue;
+                }
+                paginatedWidgetClass = ((TypeInsnNode) insn).desc;
+                break;
+            }
+            for (MethodNode method2 : node.methods) {
+                if (method2.name.equals("<init>") && method2.desc.equals("()V")) {
+                    insn = method2.instructions.getFirst();
+                    insn = getNext(insn, Opcodes.ICONST_0).getNext();
+                    if (insn.getOpcode() != Opcodes.PUTFIELD) {
+                        throw new OutdatedDeobfuscatorException("Space", WAR_LIST_WIDGET_CLASS, "__unused0", "Unexpected ocpode");
                     }
-                    while (insn != null) {
-                        if (insn.getOpcode() != Opcodes.INVOKEVIRTUAL
-                                || !((MethodInsnNode) insn).owner.equals(node.name)) {
-                            insn = insn.getNext();
-                            continue;
-                        }
-                        if (!((MethodInsnNode) insn).desc.equals("()I")) {
-                            throw new OutdatedDeobfuscatorException("Space", WIDGET_CLASS, "getInnerWidth", "Invalid descriptor");
-                        }
-                        widgetGetInnerWidthMethod = ((MethodInsnNode) insn).name;
-                        insn = insn.getNext();
-                        break;
+                    fieldInsn = (FieldInsnNode) insn;
+                    remapField(mappingsStream, node.name, fieldInsn.name, "__unused0", "()I");
+                    insn = getNext(insn, Opcodes.ICONST_3).getNext();
+                    if (insn.getOpcode() != Opcodes.INVOKEVIRTUAL) {
+                        throw new OutdatedDeobfuscatorException("Space", "WidgetLayout", "setHorizontalMargin", "Unexpected ocpode");
                     }
-                    while (insn != null) {
-                        if (insn.getOpcode() != Opcodes.NEW) {
-                            insn = insn.getNext();
-                            continue;
-                        }
-                        paginatedWidgetClass = ((TypeInsnNode) insn).desc;
-                        break;
+                    MethodInsnNode methodInsn = (MethodInsnNode) insn;
+                    if (!methodInsn.desc.equals("(I)V")) {
+                        throw new OutdatedDeobfuscatorException("Space", "WidgetLayout", "setHorizontalMargin", "Unexpected descriptor");
                     }
-                    for (MethodNode method2 : node.methods) {
-                        if (method2.name.equals("<init>") && method2.desc.equals("()V")) {
-                            insn = method2.instructions.getFirst();
-                            insn = getNext(insn, Opcodes.ICONST_0).getNext();
-                            if (insn.getOpcode() != Opcodes.PUTFIELD) {
-                                throw new OutdatedDeobfuscatorException("Space", WAR_LIST_WIDGET_CLASS, "__unused0", "Unexpected ocpode");
-                            }
-                            fieldInsn = (FieldInsnNode) insn;
-                            remapField(mappingsStream, node.name, fieldInsn.name, "__unused0", "()I");
-                            insn = getNext(insn, Opcodes.ICONST_3).getNext();
-                            if (insn.getOpcode() != Opcodes.INVOKEVIRTUAL) {
-                                throw new OutdatedDeobfuscatorException("Space", "WidgetLayout", "setHorizontalMargin", "Unexpected ocpode");
-                            }
-                            MethodInsnNode methodInsn = (MethodInsnNode) insn;
-                            if (!methodInsn.desc.equals("(I)V")) {
-                                throw new OutdatedDeobfuscatorException("Space", "WidgetLayout", "setHorizontalMargin", "Unexpected descriptor");
-                            }
-                            for (ClassNode node2 : nodes) {
-                                if (isInstanceofClass(node2, methodInsn.owner)) {
-                                    remapMethod(mappingsStream, node2.name, methodInsn.name, "setHorizontalMargin", "(I)V");
-                                }
-                            }
-                        }
+                    for (ClassNode node2 : this.hierarchy.getSubclasses(methodInsn.owner)) {
+                        remapMethod(mappingsStream, node2.name, methodInsn.name, "setHorizontalMargin", "(I)V");
                     }
-                    continue nodeLoop;
                 }
             }
         }
@@ -3799,10 +3629,8 @@ public class Autodeobf502 implements StarmappedNames502, AutodeobfRunner {
             }
             String configurablePreferenceClass = enumSettingsNode.interfaces.get(0);
             remapClass(mappingsStream, configurablePreferenceClass, CONFIGURABLE_PREFERNCE_INTERFACE);
-            for (ClassNode node : nodes) {
-                if (isInstanceofInterface(node, configurablePreferenceClass)) {
-                    remapMethod(mappingsStream, node.name, getSettingValue.name, "getValue", "()Ljava/lang/Object;");
-                }
+            for (ClassNode node : this.hierarchy.getSubtypes(configurablePreferenceClass)) {
+                remapMethod(mappingsStream, node.name, getSettingValue.name, "getValue", "()Ljava/lang/Object;");
             }
 
             MethodInsnNode isCapital = getNext(checkcast.getNext(), Opcodes.INVOKEVIRTUAL);
@@ -4024,24 +3852,14 @@ public class Autodeobf502 implements StarmappedNames502, AutodeobfRunner {
 
         ClassNode quadTreeClass = null;
 
-        classLoop:
-        for (ClassNode node : nodes) {
-            for (MethodNode method : node.methods) {
-                if (method.desc.equals("()Z")) {
-                    for (AbstractInsnNode insn = method.instructions.getFirst(); insn != null; insn = insn.getNext()) {
-                        if (insn.getOpcode() == Opcodes.LDC) {
-                            LdcInsnNode ldcInsn = (LdcInsnNode) insn;
-                            if (ldcInsn.cst.equals("Unable to insert star into quad tree!")) {
-                                if (quadTreeClass != null) {
-                                    throw new OutdatedDeobfuscatorException("Star", QUAD_TREE_CLASS, "*", "Collision");
-                                }
-                                quadTreeClass = node;
-                                continue classLoop;
-                            }
-                        }
-                    }
-                }
+        for (BytecodeIndex.MethodLocation location : this.index.getMethodsWithLdc("Unable to insert star into quad tree!")) {
+            if (location.owner == quadTreeClass || !location.method.desc.equals("()Z")) {
+                continue;
+            }
+            if (quadTreeClass != null) {
+                throw new OutdatedDeobfuscatorException("Star", QUAD_TREE_CLASS, "*", "Collision");
             }
+            quadTreeClass = location.owner;
         }
 
         if (quadTreeClass == null) {
@@ -4441,34 +4259,29 @@ public class Autodeobf502 implements StarmappedNames502, AutodeobfRunner {
         String setTimelapseModifierMethod = null;
         String galemulatorClass = null;
 
-        for (ClassNode node : nodes) {
-            if (!node.name.startsWith("com/example/Main$")) {
+        for (BytecodeIndex.MethodLocation location : this.index.getMethodsWithLdc("New speed is: ")) {
+            if (!location.owner.name.startsWith("com/example/Main$") || !location.method.name.equals("checkAndDoStuff")) {
                 continue;
             }
-            for (MethodNode method : node.methods) {
-                if (!method.name.equals("checkAndDoStuff")) {
-                    continue;
-                }
-                boolean isTimelapseModifierHotkey = false;
-                for (AbstractInsnNode insn : method.instructions) {
-                    if (insn instanceof LdcInsnNode) {
-                        LdcInsnNode ldc = (LdcInsnNode) insn;
-                        if (ldc.cst.equals("New speed is: ")) {
-                            isTimelapseModifierHotkey = true;
-                        }
-                    } else if (isTimelapseModifierHotkey && insn.getOpcode() == Opcodes.INVOKESTATIC) {
-                        MethodInsnNode minsn = (MethodInsnNode) insn;
-                        if (!minsn.desc.equals("(I)V")) {
-                            continue;
-                        }
-                        if (setTimelapseModifierMethod != null) {
-                            throw new OutdatedDeobfuscatorException("UI", "Galemulator", "setTimelapseModifier", "Collision");
-                        }
-                        setTimelapseModifierMethod = minsn.name;
-                        galemulatorClass = minsn.owner;
-                        remapClass(mappingsStream, galemulatorClass, "snoddasmannen/galimulator/Galemulator");
-                        remapMethod(mappingsStream, galemulatorClass, setTimelapseModifierMethod, "setTimelapseModifier", "(I)V");
+            boolean isTimelapseModifierHotkey = false;
+            for (AbstractInsnNode insn : location.method.instructions) {
+                if (insn instanceof LdcInsnNode) {
+                    LdcInsnNode ldc = (LdcInsnNode) insn;
+                    if (ldc.cst.equals("New speed is: ")) {
+                        isTimelapseModifierHotkey = true;
+                    }
+                } else if (isTimelapseModifierHotkey && insn.getOpcode() == Opcodes.INVOKESTATIC) {
+                    MethodInsnNode minsn = (MethodInsnNode) insn;
+                    if (!minsn.desc.equals("(I)V")) {
+                        continue;
                     }
+                    if (setTimelapseModifierMethod != null) {
+                        throw new OutdatedDeobfuscatorException("UI", "Galemulator", "setTimelapseModifier", "Collision");
+                    }
+                    setTimelapseModifierMethod = minsn.name;
+                    galemulatorClass = minsn.owner;
+                    remapClass(mappingsStream, galemulatorClass, "snoddasmannen/galimulator/Galemulator");
+                    remapMethod(mappingsStream, galemulatorClass, setTimelapseModifierMethod, "setTimelapseModifier", "(I)V");
                 }
             }
         }
@@ -6172,6 +5985,19 @@ public class Autodeobf502 implements StarmappedNames502, AutodeobfRunner {
         }
         widgetRecieveMessageMethod = widgetMessageRecieverClassNode.methods.get(0).name;
 
+        if (widgetHeaderColorField == null) {
+            throw new OutdatedDeobfuscatorException("Widget", "Widget", "headerColor", "Unresolved");
+        }
+        if (widgetHeaderTitleField == null) {
+            throw new OutdatedDeobfuscatorException("Widget", "Widget", "headerTitle", "Unresolved");
+        }
+
+        InsnPattern headerColorSetter = InsnPattern.setter(WIDGET_CLASS, widgetHeaderColorField, "Lsnoddasmannen/galimulator/GalColor;");
+        InsnPattern headerTitleSetter = InsnPattern.setter(WIDGET_CLASS, widgetHeaderTitleField, "Ljava/lang/String;");
+        InsnPattern headerTitleGetter = InsnPattern.getter(WIDGET_CLASS, widgetHeaderTitleField, "Ljava/lang/String;", false);
+        InsnPattern positioningGetter = InsnPattern.getter(WIDGET_CLASS, widgetPositioningField, "L" + WIDGET_POSITIONING_CLASS + ";", false);
+        InsnPattern positioningSetter = InsnPattern.setter(WIDGET_CLASS, widgetPositioningField, "L" + WIDGET_POSITIONING_CLASS + ";");
+
         for (MethodNode method : widgetClass.methods) {
             if (method.desc.equals("(Lcom/badlogic/gdx/math/Vector2;)Z")) {
                 if (containsPointMethod != null) {
@@ -6205,7 +6031,7 @@ public class Autodeobf502 implements StarmappedNames502, AutodeobfRunner {
                     }
                 }
             } else if (method.desc.equals("(Lsnoddasmannen/galimulator/GalColor;)V")) {
-                if (isSetter(method, WIDGET_CLASS, widgetHeaderColorField, "Lsnoddasmannen/galimulator/GalColor;")) {
+                if (headerColorSetter.matches(method)) {
                     if (widgetSetHeaderColorMethod != null) {
                         throw new IllegalStateException("The deobfuscator for the Widget class is out of date (Multiple Widget#setHeaderColor methods detected)");
                     }
@@ -6227,14 +6053,14 @@ public class Autodeobf502 implements StarmappedNames502, AutodeobfRunner {
                     }
                 }
             } else if (method.desc.equals("(Ljava/lang/String;)V")) {
-                if (isSetter(method, WIDGET_CLASS, widgetHeaderTitleField, "Ljava/lang/String;")) {
+                if (headerTitleSetter.matches(method)) {
                     if (widgetSetHeaderTitleMethod != null) {
                         throw new IllegalStateException("The deobfuscator for the Widget class is out of date (Multiple Widget#setHeaderTitle methods detected)");
                     }
                     widgetSetHeaderTitleMethod = method.name;
                 }
             } else if (method.desc.equals("()Ljava/lang/String;")) {
-                if (isGetter(method, WIDGET_CLASS, widgetHeaderTitleField, "Ljava/lang/String;", false)) {
+                if (headerTitleGetter.matches(method)) {
                     if (widgetGetHeaderTitleMethod != null) {
                         throw new IllegalStateException("The deobfuscator for the Widget class is out of date (Multiple Widget#getHeaderTitle methods detected)");
                     }
@@ -6273,12 +6099,12 @@ public class Autodeobf502 implements StarmappedNames502, AutodeobfRunner {
                 }
                 widgetChildrenField = firstField.name;
                 remapField(mappingsStream, WIDGET_CLASS, firstField.name, "children", firstField.desc);
-            } else if ((method.access & Opcodes.ACC_PUBLIC) != 0 && method.desc.equals("()L" + WIDGET_POSITIONING_CLASS + ";") && isGetter(method, WIDGET_CLASS, widgetPositioningField, "L" + WIDGET_POSITIONING_CLASS + ";", false)) {
+            } else if ((method.access & Opcodes.ACC_PUBLIC) != 0 && method.desc.equals("()L" + WIDGET_POSITIONING_CLASS + ";") && positioningGetter.matches(method)) {
                 if (widgetGetPositioningMethod != null) {
                     throw new OutdatedDeobfuscatorException("Widget", "Widget", "getPositioning", "Collision");
                 }
                 widgetGetPositioningMethod = method.name;
-            } else if ((method.access & Opcodes.ACC_PUBLIC) != 0 && method.desc.equals("(L" + WIDGET_POSITIONING_CLASS + ";)V") && isSetter(method, WIDGET_CLASS, widgetPositioningField, "L" + WIDGET_POSITIONING_CLASS + ";")) {
+            } else if ((method.access & Opcodes.ACC_PUBLIC) != 0 && method.desc.equals("(L" + WIDGET_POSITIONING_CLASS + ";)V") && positioningSetter.matches(method)) {
                 if (widgetSetPositioningMethod != null) {
                     throw new OutdatedDeobfuscatorException("Widget", "Widget", "setPositioning", "Collision");
                 }
@@ -6457,20 +6283,22 @@ public class Autodeobf502 implements StarmappedNames502, AutodeobfRunner {
 
         String widgetGetChildrenMethod = null;
         String widgetGetCameraMethod = null;
+        InsnPattern childrenGetter = InsnPattern.getter(WIDGET_CLASS, widgetChildrenField, "Ljava/util/Vector;", false);
+        InsnPattern cameraGetter = InsnPattern.getter(WIDGET_CLASS, widgetCameraField, "L" + GDX_CAMERA_CLASS + ";", false);
 
         for (MethodNode method : widgetClass.methods) {
             if ((method.access & Opcodes.ACC_PUBLIC) == 0) {
                 continue;
             }
             if (method.desc.equals("()Ljava/util/Vector;")) {
-                if (isGetter(method, WIDGET_CLASS, widgetChildrenField, "Ljava/util/Vector;", false)) {
+                if (childrenGetter.matches(method)) {
                     if (widgetGetChildrenMethod != null) {
                         throw new OutdatedDeobfuscatorException("Widget", "Widget", "getChildren", "collision");
                     }
                     widgetGetChildrenMethod = method.name;
                 }
             } else if (method.desc.equals("()L" + GDX_CAMERA_CLASS + ";")) {
-                if (isGetter(method, WIDGET_CLASS, widgetCameraField, "L" + GDX_CAMERA_CLASS + ";", false)) {
+                if (cameraGetter.matches(method)) {
                     if (widgetGetCameraMethod != null) {
                         throw new OutdatedDeobfuscatorException("Widget", "Widget", "getCamera", "collision");
                     }
@@ -6630,46 +6458,35 @@ public class Autodeobf502 implements StarmappedNames502, AutodeobfRunner {
                 continue;
             }
             // It's an overkill solution, but probably will not break anytime soon
-            StackWalker.walkStack(node, method, new StackWalkerConsumer() {
-
-                private boolean awaitPutstatic;
-                private String lastEnumName;
-
-                @Override
-                public void postCalculation(AbstractInsnNode insn, LIFOQueue<StackElement> elem) {
-                    if (lastEnumName != null) {
-                        if (awaitPutstatic && insn.getOpcode() != -1) {
-                            awaitPutstatic = false;
-                            lastEnumName = null;
-                        } else {
-                            awaitPutstatic = true;
-                        }
-                    }
-                }
-
-                @Override
-                public void preCalculation(AbstractInsnNode insn, LIFOQueue<StackElement> stack) {
-                    if (insn.getOpcode() == -1) {
-                        // Filter out pseudo-instructions
-                        return;
-                    }
-                    if (insn.getOpcode() == Opcodes.INVOKESPECIAL) {
-                        MethodInsnNode invoked = (MethodInsnNode) insn;
-                        if (stack.getSize() < 4 || !invoked.name.equals("<init>")) {
-                            // I'm sure that INVOKESPECIAL is only used for the constructor, but let's be on the safe side
-                            return;
-                        }
-                        lastEnumName = ((LdcInsnNode) ((AbstractSource) stack.getDelegateList().get(stack.getSize() - 3).source).getInsn()).cst.toString();
-                    } else if (insn.getOpcode() == Opcodes.PUTSTATIC && awaitPutstatic) {
-                        FieldInsnNode fieldInsn = ((FieldInsnNode)insn);
-                        if (fieldInsn.owner.equals(className)
-                                && fieldInsn.desc.equals("L" + className + ";")
-                                && memberMappings.put(lastEnumName, fieldInsn.name) != null) {
-                            throw new OutdatedDeobfuscatorException("Unknown", "Just overwrote a mapping?");
-                        }
+            boolean awaitPutstatic = false;
+            String lastEnumName = null;
+            for (StackFrameAnalysis.Frame frame : StackFrameAnalysis.analyse(node, method).getFrames()) {
+                AbstractInsnNode insn = frame.insn;
+                List<StackElement> stack = frame.stackBefore;
+                if (insn.getOpcode() == Opcodes.INVOKESPECIAL) {
+                    MethodInsnNode invoked = (MethodInsnNode) insn;
+                    // I'm sure that INVOKESPECIAL is only used for the constructor, but let's be on the safe side
+                    if (stack.size() >= 4 && invoked.name.equals("<init>")) {
+                        lastEnumName = ((LdcInsnNode) ((AbstractSource) stack.get(stack.size() - 3).source).getInsn()).cst.toString();
+                    }
+                } else if (insn.getOpcode() == Opcodes.PUTSTATIC && awaitPutstatic) {
+                    FieldInsnNode fieldInsn = ((FieldInsnNode)insn);
+                    if (fieldInsn.owner.equals(className)
+                            && fieldInsn.desc.equals("L" + className + ";")
+                            && memberMappings.put(lastEnumName, fieldInsn.name) != null) {
+                        throw new OutdatedDeobfuscatorException("Unknown", "Just overwrote a mapping?");
+                    }
+                }
+
+                if (lastEnumName != null) {
+                    if (awaitPutstatic && insn.getOpcode() != -1) {
+                        awaitPutstatic = false;
+                        lastEnumName = null;
+                    } else {
+                        awaitPutstatic = true;
                     }
                 }
-            });
+            }
         }
 
         if (memberMappings.isEmpty()) {
@@ -6704,4 +6521,35 @@ public class Autodeobf502 implements StarmappedNames502, AutodeobfRunner {
         remapRendersystem(mappingsStream);
         remapGenerators(mappingsStream);
     }
+
+    /**
+     * Runs all remapping tasks, however does NOT run the remapper itself.
+     * Independent tasks are run concurrently on the given pool, but the emitted mappings
+     * as well as the order in which they are applied to the remapper are the same as if the tasks were run
+     * sequentially. See {@link AutodeobfSubroutineScheduler}.
+     *
+     * @param mappingsStream Suggested remapper mappings are written to the writer in the tiny v1 format. It appeands, so the header is not written
+     * @param pool The pool to run the remapping tasks on
+     */
+    @Override
+    public void runAll(@NotNull Writer mappingsStream, @NotNull ForkJoinPool pool) throws IOException {
+        // Edges: remapUIClasses requires the textInputDialogWidgetClass and spaceLogicalTickMethodName fields set by remapSpaceFields,
+        // remapActorClasses and remapSpaceFields both alter the inner classes of Space, remapUIClasses and remapRendersystem both
+        // alter the inner classes of Galemulator.
+        new AutodeobfSubroutineScheduler()
+            .register("spaceFields", this::remapSpaceFields)
+            .register("playerMethods", this::remapPlayerMethods)
+            .register("hotkeys", this::remapHotkeys)
+            .register("empireClass", this::remapEmpireClass)
+            .register("uiClasses", this::remapUIClasses, "spaceFields")
+            .register("actorClasses", this::remapActorClasses, "spaceFields")
+            .register("mapModes", this::remapMapModes)
+            .register("noiseGenerators", this::remapNoiseGenerators)
+            .register("galaxyGeneration", this::remapGalaxyGeneration)
+            .register("employmentAgency", this::remapEmploymentAgency)
+            .register("starMethods", this::remapStarMethods)
+            .register("rendersystem", this::remapRendersystem, "uiClasses")
+            .register("generators", this::remapGenerators)
+            .runAll(mappingsStream, pool);
+    }
 }
@@ -2,6 +2,7 @@ package org.stianloader.sml6.starplane.autodeobf;
 
 import java.io.IOException;
 import java.io.Writer;
+import java.util.concurrent.ForkJoinPool;
 
 import org.jetbrains.annotations.NotNull;
 
@@ -9,4 +10,16 @@ public interface AutodeobfRunner {
     @NotNull
     String getVersion();
     void runAll(@NotNull Writer mappingsStream) throws IOException;
+
+    /**
+     * Runs all remapping tasks, possibly concurrently on the given pool. The emitted mappings must be the same as
+     * the ones emitted by {@link #runAll(Writer)}. Implementations which do not support concurrent execution run
+     * sequentially on the calling thread, which is the default behaviour.
+     *
+     * @param mappingsStream The writer to append the suggested mappings to, in the tiny v1 format
+     * @param pool The pool to run the remapping tasks on
+     */
+    default void runAll(@NotNull Writer mappingsStream, @NotNull ForkJoinPool pool) throws IOException {
+        this.runAll(mappingsStream);
+    }
 }
@@ -0,0 +1,129 @@
+package org.stianloader.sml6.starplane.autodeobf;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Executes autodeobf subroutines concurrently while respecting the dependencies declared between them.
+ *
+ * <p>Subroutines do not write to the mappings stream directly, instead they write into a {@link DeferredMappingsWriter}
+ * each. Once all subroutines completed, the buffers are merged into the actual mappings stream in the order the
+ * subroutines were {@link #register(String, Subroutine, String...) registered} in. This means that the output is
+ * exactly the same as if the subroutines were run sequentially in registration order. Should a subroutine fail,
+ * the buffers of all subroutines registered before it are merged and the exception is rethrown afterwards,
+ * again mirroring sequential behaviour.
+ *
+ * <p>Subroutines must not read state which is altered by deferred operations. State that is mutated directly
+ * (such as the contents of class nodes or fields of the deobfuscator) must only be shared between subroutines
+ * which depend on each other.
+ */
+public final class AutodeobfSubroutineScheduler {
+
+    @FunctionalInterface
+    public interface Subroutine {
+        void run(@NotNull Writer mappingsStream) throws IOException;
+    }
+
+    private static final class SubroutineNode {
+        @NotNull
+        private final List<@NotNull SubroutineNode> dependencies;
+        @NotNull
+        private final String name;
+        @NotNull
+        private final Subroutine subroutine;
+
+        private SubroutineNode(@NotNull String name, @NotNull Subroutine subroutine, @NotNull List<@NotNull SubroutineNode> dependencies) {
+            this.name = name;
+            this.subroutine = subroutine;
+            this.dependencies = dependencies;
+        }
+    }
+
+    @NotNull
+    private final Map<String, SubroutineNode> subroutines = new LinkedHashMap<>();
+
+    /**
+     * Registers a subroutine. The subroutine will only be started once all of its dependencies have completed
+     * successfully. In order to rule out cyclic dependencies, dependencies must be registered before their dependents.
+     *
+     * @param name The name of the subroutine, used to refer to it as a dependency.
+     * @param subroutine The subroutine to run.
+     * @param dependencies The names of the subroutines which need to complete before this subroutine may run.
+     * @return The current {@link AutodeobfSubroutineScheduler} instance, for chaining.
+     */
+    @NotNull
+    @Contract(mutates = "this", pure = false, value = "_, _, _ -> this")
+    public AutodeobfSubroutineScheduler register(@NotNull String name, @NotNull Subroutine subroutine, @NotNull String @NotNull... dependencies) {
+        if (this.subroutines.containsKey(name)) {
+            throw new IllegalArgumentException("Subroutine '" + name + "' was already registered.");
+        }
+        List<@NotNull SubroutineNode> resolvedDependencies = new ArrayList<>(dependencies.length);
+        for (String dependency : dependencies) {
+            SubroutineNode resolved = this.subroutines.get(dependency);
+            if (resolved == null) {
+                throw new IllegalArgumentException("Subroutine '" + name + "' depends on '" + dependency + "', which was not registered yet.");
+            }
+            resolvedDependencies.add(resolved);
+        }
+        this.subroutines.put(name, new SubroutineNode(name, Objects.requireNonNull(subroutine, "subroutine may not be null"), resolvedDependencies));
+        return this;
+    }
+
+    /**
+     * Runs all registered subroutines on the given pool and merges their output into the given writer.
+     *
+     * @param mappingsStream The writer to write the merged output of all subroutines to.
+     * @param pool The pool to run the subroutines on.
+     * @throws IOException If writing to the mappings stream or a subroutine failed.
+     */
+    public void runAll(@NotNull Writer mappingsStream, @NotNull ForkJoinPool pool) throws IOException {
+        Map<SubroutineNode, CompletableFuture<DeferredMappingsWriter>> futures = new LinkedHashMap<>();
+
+        for (SubroutineNode node : this.subroutines.values()) {
+            CompletableFuture<?>[] dependencyFutures = new CompletableFuture<?>[node.dependencies.size()];
+            for (int i = 0; i < dependencyFutures.length; i++) {
+                dependencyFutures[i] = futures.get(node.dependencies.get(i));
+            }
+
+            futures.put(node, CompletableFuture.allOf(dependencyFutures).thenApplyAsync((ignore) -> {
+                DeferredMappingsWriter buffer = new DeferredMappingsWriter();
+                try {
+                    node.subroutine.run(buffer);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Subroutine '" + node.name + "' failed", e);
+                }
+                return buffer;
+            }, pool));
+        }
+
+        for (CompletableFuture<DeferredMappingsWriter> future : futures.values()) {
+            DeferredMappingsWriter buffer;
+            try {
+                buffer = future.join();
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof UncheckedIOException) {
+                    throw ((UncheckedIOException) cause).getCause();
+                } else if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                } else if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw e;
+            }
+            buffer.replay(mappingsStream);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package org.stianloader.sml6.starplane.autodeobf;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jetbrains.annotations.NotNull;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.LdcInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+
+/**
+ * An index over the bytecode of a fixed set of classes which is built exactly once, so that
+ * deobfuscation subroutines do not need to walk over every instruction of every class themselves.
+ *
+ * <p>All returned lists are ordered in the same way as a naive iteration over the classes, their methods
+ * and the instructions of the methods would have been (that is, class order, then method order, then instruction
+ * order). Pseudo-instructions (opcode -1) are never indexed.
+ *
+ * <p>The index does not track modifications made to the classes after it was built. As the deobfuscator
+ * does not alter instructions (with the exception of adding labels, which aren't indexed), this is not an issue.
+ * Once built, the index is immutable and can safely be queried from multiple threads.
+ */
+final class BytecodeIndex {
+
+    static final class InsnLocation {
+        @NotNull
+        final ClassNode owner;
+        @NotNull
+        final MethodNode method;
+        @NotNull
+        final AbstractInsnNode insn;
+
+        InsnLocation(@NotNull ClassNode owner, @NotNull MethodNode method, @NotNull AbstractInsnNode insn) {
+            this.owner = owner;
+            this.method = method;
+            this.insn = insn;
+        }
+    }
+
+    static final class MethodLocation {
+        @NotNull
+        final ClassNode owner;
+        @NotNull
+        final MethodNode method;
+
+        MethodLocation(@NotNull ClassNode owner, @NotNull MethodNode method) {
+            this.owner = owner;
+            this.method = method;
+        }
+    }
+
+    @NotNull
+    private final Map<String, Map<String, List<InsnLocation>>> fieldInsns = new HashMap<>();
+    @NotNull
+    private final Map<Object, List<InsnLocation>> ldcInsns = new HashMap<>();
+    @NotNull
+    private final Map<Object, List<MethodLocation>> ldcMethods = new HashMap<>();
+    @NotNull
+    private final Map<String, Map<String, List<InsnLocation>>> methodInsns = new HashMap<>();
+
+    BytecodeIndex(@NotNull List<ClassNode> nodes) {
+        // Used to only register a method once per constant
+        Map<Object, MethodNode> lastLdcMethod = new HashMap<>();
+
+        for (ClassNode node : nodes) {
+            for (MethodNode method : node.methods) {
+                for (AbstractInsnNode insn = method.instructions.getFirst(); insn != null; insn = insn.getNext()) {
+                    if (insn instanceof LdcInsnNode) {
+                        Object cst = ((LdcInsnNode) insn).cst;
+                        this.ldcInsns.computeIfAbsent(cst, (key) -> new ArrayList<>()).add(new InsnLocation(node, method, insn));
+                        if (lastLdcMethod.put(cst, method) != method) {
+                            this.ldcMethods.computeIfAbsent(cst, (key) -> new ArrayList<>()).add(new MethodLocation(node, method));
+                        }
+                    } else if (insn instanceof FieldInsnNode) {
+                        FieldInsnNode fieldInsn = (FieldInsnNode) insn;
+                        this.fieldInsns.computeIfAbsent(fieldInsn.owner, (key) -> new HashMap<>())
+                            .computeIfAbsent(fieldInsn.desc, (key) -> new ArrayList<>())
+                            .add(new InsnLocation(node, method, insn));
+                    } else if (insn instanceof MethodInsnNode) {
+                        MethodInsnNode methodInsn = (MethodInsnNode) insn;
+                        this.methodInsns.computeIfAbsent(methodInsn.owner, (key) -> new HashMap<>())
+                            .computeIfAbsent(methodInsn.desc, (key) -> new ArrayList<>())
+                            .add(new InsnLocation(node, method, insn));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Obtains all field instructions (GETFIELD, PUTFIELD, GETSTATIC and PUTSTATIC) referencing a field with the
+     * given owner and descriptor, regardless of the name of the field.
+     *
+     * @param owner The internal name of the owner of the referenced field
+     * @param desc The descriptor of the referenced field
+     * @return An unmodifiable list of matching instructions
+     */
+    @NotNull
+    List<InsnLocation> getFieldInsns(@NotNull String owner, @NotNull String desc) {
+        Map<String, List<InsnLocation>> byDesc = this.fieldInsns.get(owner);
+        if (byDesc == null) {
+            return Collections.emptyList();
+        }
+        List<InsnLocation> locations = byDesc.get(desc);
+        return locations == null ? Collections.emptyList() : Collections.unmodifiableList(locations);
+    }
+
+    /**
+     * Obtains all LDC instructions which load the given constant.
+     *
+     * @param cst The constant, as per {@link LdcInsnNode#cst}
+     * @return An unmodifiable list of matching instructions
+     */
+    @NotNull
+    List<InsnLocation> getLdcInsns(@NotNull Object cst) {
+        List<InsnLocation> locations = this.ldcInsns.get(cst);
+        return locations == null ? Collections.emptyList() : Collections.unmodifiableList(locations);
+    }
+
+    /**
+     * Obtains all methods which contain at least one LDC instruction loading the given constant.
+     * Each method is only listed once.
+     *
+     * @param cst The constant, as per {@link LdcInsnNode#cst}
+     * @return An unmodifiable list of matching methods
+     */
+    @NotNull
+    List<MethodLocation> getMethodsWithLdc(@NotNull Object cst) {
+        List<MethodLocation> locations = this.ldcMethods.get(cst);
+        return locations == null ? Collections.emptyList() : Collections.unmodifiableList(locations);
+    }
+
+    /**
+     * Obtains all method instructions (INVOKEVIRTUAL, INVOKESPECIAL, INVOKESTATIC and INVOKEINTERFACE) referencing a method
+     * with the given owner and descriptor, regardless of the name of the method.
+     *
+     * @param owner The internal name of the owner of the referenced method
+     * @param desc The descriptor of the referenced method
+     * @return An unmodifiable list of matching instructions
+     */
+    @NotNull
+    List<InsnLocation> getMethodInsns(@NotNull String owner, @NotNull String desc) {
+        Map<String, List<InsnLocation>> byDesc = this.methodInsns.get(owner);
+        if (byDesc == null) {
+            return Collections.emptyList();
+        }
+        List<InsnLocation> locations = byDesc.get(desc);
+        return locations == null ? Collections.emptyList() : Collections.unmodifiableList(locations);
+    }
+}
@@ -0,0 +1,210 @@
+package org.stianloader.sml6.starplane.autodeobf;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.tree.ClassNode;
+
+/**
+ * A precomputed table of the supertypes and subtypes of a fixed set of classes.
+ *
+ * <p>Every class is assigned an ID based on its position in the list of classes the table was built from.
+ * For every class the IDs of all its supertypes are stored in a sorted array, so that supertype queries
+ * do not need to walk the hierarchy. Likewise, for every class the IDs of all its subtypes are stored, allowing
+ * "all subtypes of X" queries without scanning over every class. Only classes which are part of the table are ever
+ * considered, a class outside the table (for example {@link Object}) is neither a supertype nor a subtype of any class.
+ *
+ * <p>Two kinds of relations are tracked:
+ * <ul>
+ *  <li>The superclass relation, which only follows {@link ClassNode#superName}.</li>
+ *  <li>The supertype relation, which extends the superclass relation by the direct interfaces of every superclass
+ *  alongside their superclasses. Superinterfaces of interfaces are not followed.</li>
+ * </ul>
+ * In both relations, a class is its own superclass and supertype.
+ *
+ * <p>All returned lists are ordered in the same way as the list the table was built from. The table does not track
+ * modifications made to the classes after it was built. Once built, the table is immutable and can safely be
+ * queried from multiple threads.
+ */
+final class ClassHierarchyTable {
+
+    private static final int @NotNull[] NO_IDS = new int[0];
+
+    @NotNull
+    private final ClassNode @NotNull[] classes;
+    @NotNull
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final int @NotNull[] @NotNull[] subclasses;
+    private final int @NotNull[] @NotNull[] subtypes;
+    private final int @NotNull[] @NotNull[] superclasses;
+    private final int @NotNull[] @NotNull[] supertypes;
+
+    ClassHierarchyTable(@NotNull List<ClassNode> nodes) {
+        this.classes = nodes.toArray(new ClassNode[0]);
+        for (int i = 0; i < this.classes.length; i++) {
+            this.ids.put(this.classes[i].name, i);
+        }
+
+        int[] buffer = new int[16];
+        this.superclasses = new int[this.classes.length][];
+        for (int i = 0; i < this.classes.length; i++) {
+            int length = 0;
+            for (ClassNode node = this.classes[i]; node != null; node = this.getNode(node.superName)) {
+                if (length == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, length * 2);
+                }
+                buffer[length++] = this.ids.get(node.name);
+            }
+            this.superclasses[i] = ClassHierarchyTable.toSortedSet(buffer, length);
+        }
+
+        this.supertypes = new int[this.classes.length][];
+        for (int i = 0; i < this.classes.length; i++) {
+            int length = 0;
+            for (int superclass : this.superclasses[i]) {
+                if (length == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, length * 2);
+                }
+                buffer[length++] = superclass;
+                for (String interfaceName : this.classes[superclass].interfaces) {
+                    Integer interfaceId = this.ids.get(interfaceName);
+                    if (interfaceId == null) {
+                        continue;
+                    }
+                    int[] interfaceSuperclasses = this.superclasses[interfaceId];
+                    if (length + interfaceSuperclasses.length > buffer.length) {
+                        buffer = Arrays.copyOf(buffer, (length + interfaceSuperclasses.length) * 2);
+                    }
+                    System.arraycopy(interfaceSuperclasses, 0, buffer, length, interfaceSuperclasses.length);
+                    length += interfaceSuperclasses.length;
+                }
+            }
+            this.supertypes[i] = ClassHierarchyTable.toSortedSet(buffer, length);
+        }
+
+        this.subclasses = ClassHierarchyTable.invert(this.superclasses);
+        this.subtypes = ClassHierarchyTable.invert(this.supertypes);
+    }
+
+    private static int @NotNull[] @NotNull[] invert(int @NotNull[] @NotNull[] relation) {
+        int[] counts = new int[relation.length];
+        for (int[] targets : relation) {
+            for (int target : targets) {
+                counts[target]++;
+            }
+        }
+        int[][] inverted = new int[relation.length][];
+        for (int i = 0; i < relation.length; i++) {
+            inverted[i] = counts[i] == 0 ? ClassHierarchyTable.NO_IDS : new int[counts[i]];
+            counts[i] = 0;
+        }
+        // As sources are visited in ascending order, the inverted arrays are sorted implicitly
+        for (int source = 0; source < relation.length; source++) {
+            for (int target : relation[source]) {
+                inverted[target][counts[target]++] = source;
+            }
+        }
+        return inverted;
+    }
+
+    private static int @NotNull[] toSortedSet(int @NotNull[] buffer, int length) {
+        if (length == 0) {
+            return ClassHierarchyTable.NO_IDS;
+        }
+        int[] set = Arrays.copyOf(buffer, length);
+        Arrays.sort(set);
+        int uniqueLength = 1;
+        for (int i = 1; i < length; i++) {
+            if (set[i] != set[uniqueLength - 1]) {
+                set[uniqueLength++] = set[i];
+            }
+        }
+        return uniqueLength == length ? set : Arrays.copyOf(set, uniqueLength);
+    }
+
+    @Nullable
+    private ClassNode getNode(@Nullable String name) {
+        if (name == null) {
+            return null;
+        }
+        Integer id = this.ids.get(name);
+        return id == null ? null : this.classes[id];
+    }
+
+    /**
+     * Obtains all classes which have the given class in their superclass hierarchy, including the class itself.
+     *
+     * @param type The internal name of the class
+     * @return An unmodifiable list of all subclasses, empty if the class is not known
+     */
+    @NotNull
+    List<ClassNode> getSubclasses(@NotNull String type) {
+        return this.toNodes(this.subclasses, type);
+    }
+
+    /**
+     * Obtains all classes which have the given class or interface in their supertype hierarchy, including the class itself.
+     *
+     * @param type The internal name of the class or interface
+     * @return An unmodifiable list of all subtypes, empty if the class is not known
+     */
+    @NotNull
+    List<ClassNode> getSubtypes(@NotNull String type) {
+        return this.toNodes(this.subtypes, type);
+    }
+
+    /**
+     * Checks whether the given class is or extends the class with the given name.
+     * Interfaces are not considered.
+     *
+     * @param node The class to check, may be null in which case false is returned
+     * @param type The internal name of the potential superclass
+     * @return True if type is a superclass of node
+     */
+    boolean isSubclass(@Nullable ClassNode node, @NotNull String type) {
+        return this.isInRelation(this.superclasses, node, type);
+    }
+
+    /**
+     * Checks whether the given class is, extends or implements the class or interface with the given name.
+     *
+     * @param node The class to check, may be null in which case false is returned
+     * @param type The internal name of the potential supertype
+     * @return True if type is a supertype of node
+     */
+    boolean isSubtype(@Nullable ClassNode node, @NotNull String type) {
+        return this.isInRelation(this.supertypes, node, type);
+    }
+
+    private boolean isInRelation(int @NotNull[] @NotNull[] relation, @Nullable ClassNode node, @NotNull String type) {
+        if (node == null) {
+            return false;
+        }
+        Integer nodeId = this.ids.get(node.name);
+        Integer typeId = this.ids.get(type);
+        if (nodeId == null || typeId == null) {
+            return false;
+        }
+        return Arrays.binarySearch(relation[nodeId], typeId) >= 0;
+    }
+
+    @NotNull
+    private List<ClassNode> toNodes(int @NotNull[] @NotNull[] relation, @NotNull String type) {
+        Integer id = this.ids.get(type);
+        if (id == null) {
+            return Collections.emptyList();
+        }
+        int[] memberIds = relation[id];
+        List<ClassNode> members = new ArrayList<>(memberIds.length);
+        for (int memberId : memberIds) {
+            members.add(this.classes[memberId]);
+        }
+        return Collections.unmodifiableList(members);
+    }
+}
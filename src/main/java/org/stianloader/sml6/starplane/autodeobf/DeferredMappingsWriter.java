@@ -0,0 +1,84 @@
+package org.stianloader.sml6.starplane.autodeobf;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A {@link Writer} which buffers everything written to it alongside with so-called deferred operations,
+ * which are operations that would have altered global state. These writes and operations can then be replayed
+ * in order on the actual mappings writer at a later point in time.
+ *
+ * <p>This is used by {@link AutodeobfSubroutineScheduler} in order to allow deobfuscation subroutines to run concurrently,
+ * while still applying their effects in a deterministic order. Instances of this class are not thread-safe.
+ */
+final class DeferredMappingsWriter extends Writer {
+
+    @FunctionalInterface
+    interface DeferredOperation {
+        void apply(@NotNull Writer mappingsOut) throws IOException;
+    }
+
+    @NotNull
+    private final StringBuilder currentText = new StringBuilder();
+    @NotNull
+    private final List<@NotNull DeferredOperation> operations = new ArrayList<>();
+
+    @Override
+    public void close() {
+        // NOP
+    }
+
+    /**
+     * Enqueues an operation that is executed once this writer is {@link #replay(Writer) replayed}.
+     * Text written before calling this method will be written before the operation is executed,
+     * text written after calling this method will be written after the operation is executed.
+     *
+     * @param operation The operation to defer
+     */
+    public void defer(@NotNull DeferredOperation operation) {
+        this.pushText();
+        this.operations.add(operation);
+    }
+
+    @Override
+    public void flush() {
+        // NOP
+    }
+
+    private void pushText() {
+        if (this.currentText.length() == 0) {
+            return;
+        }
+        String text = this.currentText.toString();
+        this.currentText.setLength(0);
+        this.operations.add((mappingsOut) -> mappingsOut.write(text));
+    }
+
+    /**
+     * Writes all buffered text to the given writer and executes all deferred operations in the order they
+     * were originally issued in.
+     *
+     * @param mappingsOut The writer to replay to
+     * @throws IOException If writing to the writer failed
+     */
+    public void replay(@NotNull Writer mappingsOut) throws IOException {
+        this.pushText();
+        for (DeferredOperation operation : this.operations) {
+            operation.apply(mappingsOut);
+        }
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) {
+        this.currentText.append(cbuf, off, len);
+    }
+
+    @Override
+    public void write(@NotNull String str, int off, int len) {
+        this.currentText.append(str, off, off + len);
+    }
+}
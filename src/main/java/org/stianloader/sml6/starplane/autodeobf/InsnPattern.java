@@ -0,0 +1,193 @@
+package org.stianloader.sml6.starplane.autodeobf;
+
+import java.util.Objects;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.VarInsnNode;
+
+/**
+ * A precompiled pattern which is matched against the first instructions of a method.
+ * Pseudo-instructions (opcode -1) within the method are skipped while matching.
+ *
+ * <p>Patterns are compiled from template instructions, where the opcode as well as the operands of the
+ * template need to match. Field and method instructions may use {@link #WILDCARD} as their name in order to
+ * match any name, their owner and descriptor need to match exactly. Only the opcode of {@link InsnNode} templates and
+ * the local variable index of {@link VarInsnNode} templates are compared.
+ *
+ * <p>A pattern only covers the start of the method, that is instructions following the matched sequence
+ * are ignored. Once compiled, patterns are immutable and can safely be used from multiple threads.
+ */
+final class InsnPattern {
+
+    /**
+     * Pseudo-opcode matching any of the return instructions, including {@link Opcodes#RETURN}.
+     */
+    private static final int ANY_RETURN = -2;
+
+    /**
+     * Name used by field and method instruction templates in order to match any name.
+     */
+    @NotNull
+    static final String WILDCARD = "*";
+
+    /**
+     * Compiles a pattern from a list of template instructions. Pseudo-instructions within the template are ignored.
+     *
+     * @param template The template instructions, in the order they need to appear in
+     * @return The compiled pattern
+     */
+    @NotNull
+    static InsnPattern compile(@NotNull AbstractInsnNode @NotNull... template) {
+        int length = 0;
+        for (AbstractInsnNode insn : template) {
+            if (insn.getOpcode() != -1) {
+                length++;
+            }
+        }
+
+        InsnPattern pattern = new InsnPattern(length);
+        int i = 0;
+        for (AbstractInsnNode insn : template) {
+            int opcode = insn.getOpcode();
+            if (opcode == -1) {
+                continue;
+            }
+            if (insn instanceof MethodInsnNode) {
+                MethodInsnNode methodInsn = (MethodInsnNode) insn;
+                pattern.set(i++, opcode, methodInsn.owner, methodInsn.name, methodInsn.desc, -1);
+            } else if (insn instanceof FieldInsnNode) {
+                FieldInsnNode fieldInsn = (FieldInsnNode) insn;
+                pattern.set(i++, opcode, fieldInsn.owner, fieldInsn.name, fieldInsn.desc, -1);
+            } else if (insn instanceof VarInsnNode) {
+                pattern.set(i++, opcode, null, null, null, ((VarInsnNode) insn).var);
+            } else if (insn instanceof InsnNode) {
+                pattern.set(i++, opcode, null, null, null, -1);
+            } else {
+                throw new IllegalArgumentException("Cannot compare instances of class " + insn.getClass().getName());
+            }
+        }
+        return pattern;
+    }
+
+    /**
+     * Compiles a pattern matching trivial getter methods, that is methods which load the given field and immediately return it.
+     *
+     * @param fieldOwner The internal name of the owner of the field
+     * @param fieldName The name of the field
+     * @param fieldDesc The descriptor of the field
+     * @param staticField Whether the field is a static field
+     * @return The compiled pattern
+     */
+    @NotNull
+    static InsnPattern getter(@NotNull String fieldOwner, @NotNull String fieldName, @NotNull String fieldDesc, boolean staticField) {
+        if (staticField) {
+            InsnPattern pattern = new InsnPattern(2);
+            pattern.set(0, Opcodes.GETSTATIC, fieldOwner, fieldName, fieldDesc, -1);
+            pattern.set(1, InsnPattern.ANY_RETURN, null, null, null, -1);
+            return pattern;
+        }
+        InsnPattern pattern = new InsnPattern(3);
+        pattern.set(0, Opcodes.ALOAD, null, null, null, 0);
+        pattern.set(1, Opcodes.GETFIELD, fieldOwner, fieldName, fieldDesc, -1);
+        pattern.set(2, InsnPattern.ANY_RETURN, null, null, null, -1);
+        return pattern;
+    }
+
+    /**
+     * Compiles a pattern matching trivial setter methods, that is methods which store their first argument in the given
+     * instance field and then immediately return.
+     *
+     * @param fieldOwner The internal name of the owner of the field
+     * @param fieldName The name of the field
+     * @param fieldDesc The descriptor of the field
+     * @return The compiled pattern
+     */
+    @NotNull
+    static InsnPattern setter(@NotNull String fieldOwner, @NotNull String fieldName, @NotNull String fieldDesc) {
+        return InsnPattern.compile(new VarInsnNode(Opcodes.ALOAD, 0),
+                new VarInsnNode(Opcodes.ALOAD, 1),
+                new FieldInsnNode(Opcodes.PUTFIELD, fieldOwner, fieldName, fieldDesc),
+                new InsnNode(Opcodes.RETURN));
+    }
+
+    @Nullable
+    private final String @NotNull[] descs;
+    @Nullable
+    private final String @NotNull[] names;
+    private final int @NotNull[] opcodes;
+    @Nullable
+    private final String @NotNull[] owners;
+    private final int @NotNull[] vars;
+
+    private InsnPattern(int length) {
+        this.opcodes = new int[length];
+        this.owners = new String[length];
+        this.names = new String[length];
+        this.descs = new String[length];
+        this.vars = new int[length];
+    }
+
+    private boolean matchesElement(int index, @NotNull AbstractInsnNode insn) {
+        int expectedOpcode = this.opcodes[index];
+        int opcode = insn.getOpcode();
+        if (expectedOpcode == InsnPattern.ANY_RETURN) {
+            return opcode >= Opcodes.IRETURN && opcode <= Opcodes.RETURN;
+        } else if (expectedOpcode != opcode) {
+            return false;
+        }
+
+        String owner = this.owners[index];
+        if (owner != null) {
+            String name = this.names[index];
+            if (insn instanceof MethodInsnNode) {
+                MethodInsnNode methodInsn = (MethodInsnNode) insn;
+                return owner.equals(methodInsn.owner) && Objects.equals(this.descs[index], methodInsn.desc) && (name == null || name.equals(methodInsn.name));
+            } else {
+                FieldInsnNode fieldInsn = (FieldInsnNode) insn;
+                return owner.equals(fieldInsn.owner) && Objects.equals(this.descs[index], fieldInsn.desc) && (name == null || name.equals(fieldInsn.name));
+            }
+        }
+
+        int var = this.vars[index];
+        return var == -1 || var == ((VarInsnNode) insn).var;
+    }
+
+    /**
+     * Checks whether the instructions of the given method start with the instructions described by this pattern.
+     *
+     * @param method The method to check
+     * @return True if the pattern matches, false otherwise
+     */
+    boolean matches(@NotNull MethodNode method) {
+        AbstractInsnNode insn = method.instructions.getFirst();
+        for (int i = 0; i < this.opcodes.length; i++) {
+            while (insn != null && insn.getOpcode() == -1) {
+                insn = insn.getNext();
+            }
+            if (insn == null || !this.matchesElement(i, insn)) {
+                return false;
+            }
+            insn = insn.getNext();
+        }
+        return true;
+    }
+
+    private void set(int index, int opcode, @Nullable String owner, @Nullable String name, @Nullable String desc, int var) {
+        if (owner != null && name == null) {
+            // Otherwise an unresolved name would silently act as a wildcard
+            throw new NullPointerException("name may not be null. Use InsnPattern.WILDCARD to match any name.");
+        }
+        this.opcodes[index] = opcode;
+        this.owners[index] = owner;
+        this.names[index] = InsnPattern.WILDCARD.equals(name) ? null : name;
+        this.descs[index] = desc;
+        this.vars[index] = var;
+    }
+}
@@ -0,0 +1,117 @@
+package org.stianloader.sml6.starplane.autodeobf;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import de.geolykt.starloader.deobf.LIFOQueue;
+import de.geolykt.starloader.deobf.StackElement;
+import de.geolykt.starloader.deobf.StackWalker;
+import de.geolykt.starloader.deobf.StackWalker.StackWalkerConsumer;
+
+/**
+ * The recorded result of a single {@link StackWalker#walkStack(ClassNode, MethodNode, StackWalkerConsumer) stack walk}
+ * over a method. It holds the state of the operand stack before every visited instruction, which allows
+ * the stack of a method to be queried without writing a {@link StackWalkerConsumer}.
+ *
+ * <p>Stack snapshots are ordered in the same way as {@link LIFOQueue#getDelegateList()} at the time of recording.
+ * The analysis does not track modifications made to the method after it was recorded. Once recorded, the analysis
+ * is immutable and can safely be queried from multiple threads.
+ */
+final class StackFrameAnalysis {
+
+    static final class Frame {
+        @NotNull
+        final AbstractInsnNode insn;
+        @NotNull
+        final List<StackElement> stackBefore;
+
+        Frame(@NotNull AbstractInsnNode insn, @NotNull List<StackElement> stackBefore) {
+            this.insn = insn;
+            this.stackBefore = stackBefore;
+        }
+    }
+
+    /**
+     * Walks the given method and records the stack state of every visited instruction.
+     *
+     * @param owner The class that declares the method
+     * @param method The method to analyse
+     * @return The recorded analysis
+     */
+    @NotNull
+    static StackFrameAnalysis analyse(@NotNull ClassNode owner, @NotNull MethodNode method) {
+        List<Frame> frames = new ArrayList<>();
+        StackWalker.walkStack(owner, method, new StackWalkerConsumer() {
+            private List<StackElement> stackBefore;
+
+            @Override
+            public void preCalculation(AbstractInsnNode insn, LIFOQueue<StackElement> stack) {
+                this.stackBefore = StackFrameAnalysis.snapshot(stack);
+            }
+
+            @Override
+            public void postCalculation(AbstractInsnNode insn, LIFOQueue<StackElement> stack) {
+                List<StackElement> stackBefore = this.stackBefore;
+                if (stackBefore == null) {
+                    throw new IllegalStateException("Stack walker did not call preCalculation before postCalculation");
+                }
+                // The stack after the instruction is not recorded, as no consumer needs it
+                frames.add(new Frame(insn, stackBefore));
+                this.stackBefore = null;
+            }
+        });
+        return new StackFrameAnalysis(frames);
+    }
+
+    @NotNull
+    private static List<StackElement> snapshot(@NotNull LIFOQueue<StackElement> stack) {
+        if (stack.getSize() == 0) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(new ArrayList<>(stack.getDelegateList()));
+    }
+
+    @NotNull
+    private final Map<AbstractInsnNode, Frame> firstFrames = new IdentityHashMap<>();
+    @NotNull
+    private final List<Frame> frames;
+
+    private StackFrameAnalysis(@NotNull List<Frame> frames) {
+        this.frames = Collections.unmodifiableList(frames);
+        for (Frame frame : frames) {
+            this.firstFrames.putIfAbsent(frame.insn, frame);
+        }
+    }
+
+    /**
+     * Obtains all recorded frames in the order the stack walker visited the instructions in.
+     * Pseudo-instructions are included.
+     *
+     * @return An unmodifiable list of all frames
+     */
+    @NotNull
+    List<Frame> getFrames() {
+        return this.frames;
+    }
+
+    /**
+     * Obtains the state of the operand stack before the given instruction is executed.
+     *
+     * @param insn The instruction
+     * @return An unmodifiable snapshot of the stack, or null if the instruction was never visited
+     */
+    @Nullable
+    List<StackElement> getStackBefore(@NotNull AbstractInsnNode insn) {
+        Frame frame = this.firstFrames.get(insn);
+        return frame == null ? null : frame.stackBefore;
+    }
+}
@@ -0,0 +1,71 @@
+package org.stianloader.sml6.starplane.remapping;
+
+import java.nio.ByteBuffer;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Helper methods for blocked bloom filters over 32-bit hash codes, used to answer queries for unmapped names without
+ * probing the (considerably larger) hash tables of a {@link StarplaneMappingIndex}.
+ *
+ * <p>All bits set for a hash code lie within a single 64-bit word, so a query touches a single cache line.
+ * The filters are sized with at least 16 bits per entry, for a false positive rate of at most about one percent.
+ */
+final class BloomFilter {
+
+    private static final int BITS_PER_ENTRY = 16;
+
+    /**
+     * Obtains the bits to set within the word of a hash.
+     */
+    private static long bits(long hash) {
+        // Only the lower 6 bits of the shift distance are used
+        return (1L << hash) | (1L << (hash >>> 6)) | (1L << (hash >>> 12)) | (1L << (hash >>> 18));
+    }
+
+    static void add(long @NotNull[] words, int hash) {
+        long mixed = BloomFilter.mix(hash);
+        words[BloomFilter.word(mixed, words.length)] |= BloomFilter.bits(mixed);
+    }
+
+    /**
+     * Checks whether a filter stored within a buffer might contain a hash code.
+     *
+     * @param buffer The buffer the filter is stored in
+     * @param offset The offset of the first word of the filter within the buffer
+     * @param words The amount of words of the filter
+     * @param hash The hash code to query
+     * @return False if the hash code was definitely not added to the filter
+     */
+    static boolean mightContain(@NotNull ByteBuffer buffer, int offset, int words, int hash) {
+        long mixed = BloomFilter.mix(hash);
+        long bits = BloomFilter.bits(mixed);
+        return (buffer.getLong(offset + BloomFilter.word(mixed, words) * 8) & bits) == bits;
+    }
+
+    private static long mix(int hash) {
+        // Finalizer of MurmurHash3, as the hash codes of similar strings differ in few bits only
+        long h = hash;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static int word(long hash, int words) {
+        return (int) (hash >>> 32) & (words - 1);
+    }
+
+    /**
+     * Computes the amount of words of a filter for the given amount of entries, which is a power of two.
+     */
+    static int words(int entries) {
+        int words = (int) Math.min(1 << 30, ((long) entries * BloomFilter.BITS_PER_ENTRY + 63) / 64);
+        return words <= 1 ? 1 : Integer.highestOneBit(words - 1) << 1;
+    }
+
+    private BloomFilter() {
+    }
+}
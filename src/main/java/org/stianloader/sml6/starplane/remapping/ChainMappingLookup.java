@@ -1,23 +1,141 @@
 package org.stianloader.sml6.starplane.remapping;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 import org.jetbrains.annotations.NotNull;
 import org.stianloader.remapper.MappingLookup;
+import org.stianloader.remapper.MemberRef;
 import org.stianloader.remapper.Remapper;
 
+/**
+ * A lookup that passes names through several lookups in succession, where the destination namespace of a lookup is the
+ * source namespace of the next lookup.
+ *
+ * <p>Outside of debug mode, the remapped member descriptors of every intermediary namespace are cached, so that a lookup
+ * does not allocate once all descriptors were seen. As such, the class mappings of the delegates must not change after
+ * the first member lookup. At most {@value #MAX_CACHED_DESCRIPTORS} descriptors are cached per delegate, which covers
+ * all distinct descriptors of a typical game jar.
+ */
 public class ChainMappingLookup implements MappingLookup {
 
+    @NotNull
+    private static final ThreadLocal<StringBuilder> DESCRIPTOR_BUILDER = ThreadLocal.withInitial(StringBuilder::new);
+
+    /**
+     * The maximum amount of descriptors cached per delegate. Descriptors seen after a cache is full are remapped on every lookup.
+     */
+    private static final int MAX_CACHED_DESCRIPTORS = 1 << 16;
+
+    @NotNull
+    private final List<Map<String, String>> descriptorCaches;
     @NotNull
     private final MappingLookup @NotNull[] lookupDelegates;
     private boolean debugMode = false;
 
     public ChainMappingLookup(@NotNull MappingLookup @NotNull... lookups) {
         this.lookupDelegates = lookups;
+        this.descriptorCaches = new ArrayList<>(lookups.length);
+        for (int i = 0; i < lookups.length; i++) {
+            this.descriptorCaches.add(new ConcurrentHashMap<>());
+        }
     }
 
     public void enableDebugMode(boolean debug) {
         this.debugMode = debug;
     }
 
+    /**
+     * Composes all delegates of this chain into a single lookup table that maps from the names of the source namespace
+     * of the first delegate to the names of the destination namespace of the last delegate. The returned lookup
+     * yields the same results as this chain, but without remapping owners and descriptors at every hop.
+     *
+     * <p>All delegates must be {@link EnumerableMappingLookup enumerable}. In order to find the names of the first
+     * namespace for mappings contributed by a later delegate, the mappings of the preceding delegates are inverted,
+     * which assumes that no two classes or members are mapped to the same name by a delegate.
+     * Changes made to the delegates after flattening are not reflected by the returned lookup.
+     *
+     * @return The flattened lookup
+     * @throws UnsupportedOperationException If a delegate is not enumerable
+     */
+    @NotNull
+    public FlatMappingLookup flatten() {
+        return this.flatten(new SymbolTable());
+    }
+
+    /**
+     * Composes all delegates of this chain into a single lookup table, as per {@link #flatten()}, interning all names
+     * in the given symbol table. Sharing a symbol table between several flattened lookups avoids holding the same
+     * names several times. The symbol table must not be queried by other threads while the chain is being flattened.
+     *
+     * @param symbols The symbol table to intern the names in
+     * @return The flattened lookup
+     * @throws UnsupportedOperationException If a delegate is not enumerable
+     */
+    @NotNull
+    public FlatMappingLookup flatten(@NotNull SymbolTable symbols) {
+        FlatMappingLookup[] inverted = new FlatMappingLookup[this.lookupDelegates.length];
+        FlatMappingLookup flat = new FlatMappingLookup(symbols);
+        StringBuilder descBuilder = new StringBuilder();
+
+        for (int i = 0; i < this.lookupDelegates.length; i++) {
+            MappingLookup delegate = this.lookupDelegates[i];
+            if (!(delegate instanceof EnumerableMappingLookup)) {
+                throw new UnsupportedOperationException("Lookup " + delegate + " cannot enumerate its mappings and thus cannot be flattened.");
+            }
+            EnumerableMappingLookup layer = (EnumerableMappingLookup) delegate;
+            FlatMappingLookup inverse = new FlatMappingLookup(symbols);
+            int layerIndex = i;
+
+            layer.forEachClassMapping((srcName, dstName) -> {
+                inverse.putClass(dstName, srcName);
+                String originalName = ChainMappingLookup.projectClassName(inverted, layerIndex, srcName);
+                String finalName = this.getRemappedClassName(originalName);
+                if (!finalName.equals(originalName)) {
+                    flat.putClass(originalName, finalName);
+                }
+            });
+
+            layer.forEachMemberMapping((srcRef, dstName) -> {
+                boolean field = srcRef.getDesc().codePointAt(0) != '(';
+                String dstOwner = layer.getRemappedClassName(srcRef.getOwner());
+                String dstDesc = field ? Remapper.getRemappedFieldDescriptor(layer, srcRef.getDesc(), descBuilder)
+                        : Remapper.getRemappedMethodDescriptor(layer, srcRef.getDesc(), descBuilder);
+                inverse.putMember(new MemberRef(dstOwner, dstName, dstDesc), srcRef.getName());
+
+                String owner = srcRef.getOwner();
+                String name = srcRef.getName();
+                String desc = srcRef.getDesc();
+                for (int j = layerIndex - 1; j >= 0; j--) {
+                    FlatMappingLookup previous = inverted[j];
+                    name = field ? previous.getRemappedFieldName(owner, name, desc) : previous.getRemappedMethodName(owner, name, desc);
+                    desc = field ? Remapper.getRemappedFieldDescriptor(previous, desc, descBuilder)
+                            : Remapper.getRemappedMethodDescriptor(previous, desc, descBuilder);
+                    owner = previous.getRemappedClassName(owner);
+                }
+
+                String finalName = field ? this.remapFieldName(owner, name, desc) : this.remapMethodName(owner, name, desc);
+                if (!finalName.equals(name)) {
+                    flat.putMember(new MemberRef(owner, name, desc), finalName);
+                }
+            });
+
+            inverted[i] = inverse;
+        }
+
+        return flat;
+    }
+
+    @NotNull
+    private static String projectClassName(@NotNull FlatMappingLookup @NotNull[] inverted, int layerIndex, @NotNull String name) {
+        for (int j = layerIndex - 1; j >= 0; j--) {
+            name = inverted[j].getRemappedClassName(name);
+        }
+        return name;
+    }
+
     @Override
     @NotNull
     public String getRemappedClassName(@NotNull String srcName) {
@@ -30,46 +148,112 @@ public class ChainMappingLookup implements MappingLookup {
     @Override
     @NotNull
     public String getRemappedFieldName(@NotNull String srcOwner, @NotNull String srcName, @NotNull String srcDesc) {
+        if (!this.debugMode) {
+            return this.remapFieldName(srcOwner, srcName, srcDesc);
+        }
+
         StringBuilder descBuilder = new StringBuilder();
         for (MappingLookup lookup : this.lookupDelegates) {
-            if (this.debugMode) {
-                String mappingName = lookup.toString();
-                if (mappingName.length() < 64) {
-                    mappingName += " ".repeat(64 - mappingName.length());
-                }
-                System.out.println("\tf\t" + lookup.toString() + "\t" + srcOwner + '.' + srcName + ' ' + srcDesc);
+            String mappingName = lookup.toString();
+            if (mappingName.length() < 64) {
+                mappingName += " ".repeat(64 - mappingName.length());
             }
+            System.out.println("\tf\t" + lookup.toString() + "\t" + srcOwner + '.' + srcName + ' ' + srcDesc);
             srcName = lookup.getRemappedFieldName(srcOwner, srcName, srcDesc);
             srcDesc = Remapper.getRemappedFieldDescriptor(lookup, srcDesc, descBuilder);
             srcOwner = lookup.getRemappedClassName(srcOwner);
         }
 
-        if (this.debugMode) {
-            System.out.println("\t-\t" + ".".repeat(64) + "\t" + srcOwner + '.' + srcName + ' '  + srcDesc + "\n");
-        }
-
+        System.out.println("\t-\t" + ".".repeat(64) + "\t" + srcOwner + '.' + srcName + ' '  + srcDesc + "\n");
         return srcName;
     }
 
     @Override
     @NotNull
     public String getRemappedMethodName(@NotNull String srcOwner, @NotNull String srcName, @NotNull String srcDesc) {
+        if (!this.debugMode) {
+            return this.remapMethodName(srcOwner, srcName, srcDesc);
+        }
+
         StringBuilder descBuilder = new StringBuilder();
         for (MappingLookup lookup : this.lookupDelegates) {
-            if (this.debugMode) {
-                String mappingName = lookup.toString();
-                if (mappingName.length() < 64) {
-                    mappingName += " ".repeat(64 - mappingName.length());
-                }
-                System.out.println("\tm\t" + lookup.toString() + "\t" + srcOwner + '.' + srcName + srcDesc);
+            String mappingName = lookup.toString();
+            if (mappingName.length() < 64) {
+                mappingName += " ".repeat(64 - mappingName.length());
             }
+            System.out.println("\tm\t" + lookup.toString() + "\t" + srcOwner + '.' + srcName + srcDesc);
             srcName = lookup.getRemappedMethodName(srcOwner, srcName, srcDesc);
             srcDesc = Remapper.getRemappedMethodDescriptor(lookup, srcDesc, descBuilder);
             srcOwner = lookup.getRemappedClassName(srcOwner);
         }
-        if (this.debugMode) {
-            System.out.println("\t-\t" + ".".repeat(64) + "\t" + srcOwner + '.' + srcName + srcDesc + "\n");
+        System.out.println("\t-\t" + ".".repeat(64) + "\t" + srcOwner + '.' + srcName + srcDesc + "\n");
+        return srcName;
+    }
+
+    /**
+     * Remaps a descriptor through a single delegate. Descriptors without any class references are returned as-is,
+     * all other descriptors are cached per delegate, up to {@link #MAX_CACHED_DESCRIPTORS} descriptors. The returned descriptor is the same instance as the
+     * input descriptor if the delegate does not remap any of the referenced classes.
+     *
+     * @param index The index of the delegate
+     * @param desc The descriptor to remap
+     * @return The remapped descriptor
+     */
+    @NotNull
+    private String remapDescriptor(int index, @NotNull String desc) {
+        if (desc.indexOf('L') == -1) {
+            // Only primitive types and arrays thereof
+            return desc;
+        }
+
+        Map<String, String> cache = this.descriptorCaches.get(index);
+        String remapped = cache.get(desc);
+        if (remapped != null) {
+            return remapped;
+        }
+
+        MappingLookup lookup = this.lookupDelegates[index];
+        StringBuilder builder = ChainMappingLookup.DESCRIPTOR_BUILDER.get();
+        if (desc.codePointAt(0) == '(') {
+            remapped = Remapper.getRemappedMethodDescriptor(lookup, desc, builder);
+        } else {
+            remapped = Remapper.getRemappedFieldDescriptor(lookup, desc, builder);
+        }
+        if (remapped.equals(desc)) {
+            remapped = desc;
         }
-         return srcName;
+        if (cache.size() < ChainMappingLookup.MAX_CACHED_DESCRIPTORS) {
+            // The bound is not exact under concurrent insertion, but it keeps long-lived lookups from growing without limit
+            cache.put(desc, remapped);
+        }
+        return remapped;
+    }
+
+    @NotNull
+    private String remapFieldName(@NotNull String srcOwner, @NotNull String srcName, @NotNull String srcDesc) {
+        int last = this.lookupDelegates.length - 1;
+        for (int i = 0; i <= last; i++) {
+            MappingLookup lookup = this.lookupDelegates[i];
+            srcName = lookup.getRemappedFieldName(srcOwner, srcName, srcDesc);
+            if (i != last) {
+                srcDesc = this.remapDescriptor(i, srcDesc);
+                srcOwner = lookup.getRemappedClassName(srcOwner);
+            }
+        }
+        return srcName;
+    }
+
+    @NotNull
+    private String remapMethodName(@NotNull String srcOwner, @NotNull String srcName, @NotNull String srcDesc) {
+        int last = this.lookupDelegates.length - 1;
+        for (int i = 0; i <= last; i++) {
+            MappingLookup lookup = this.lookupDelegates[i];
+            srcName = lookup.getRemappedMethodName(srcOwner, srcName, srcDesc);
+            if (i != last) {
+                srcDesc = this.remapDescriptor(i, srcDesc);
+                srcOwner = lookup.getRemappedClassName(srcOwner);
+            }
+        }
+        return srcName;
     }
 }
@@ -0,0 +1,30 @@
+package org.stianloader.sml6.starplane.remapping;
+
+import java.util.function.BiConsumer;
+
+import org.jetbrains.annotations.NotNull;
+import org.stianloader.remapper.MappingLookup;
+import org.stianloader.remapper.MemberRef;
+
+/**
+ * A {@link MappingLookup} which is capable of listing all the mappings it knows of.
+ * Such lookups can be composed ahead of time through {@link ChainMappingLookup#flatten()}.
+ */
+public interface EnumerableMappingLookup extends MappingLookup {
+
+    /**
+     * Invokes the consumer for every class mapping of this lookup, with the source name as the first
+     * argument and the destination name as the second argument.
+     *
+     * @param consumer The consumer to invoke
+     */
+    void forEachClassMapping(@NotNull BiConsumer<@NotNull String, @NotNull String> consumer);
+
+    /**
+     * Invokes the consumer for every field and method mapping of this lookup, with the member reference
+     * in the source namespace as the first argument and the destination name of the member as the second argument.
+     *
+     * @param consumer The consumer to invoke
+     */
+    void forEachMemberMapping(@NotNull BiConsumer<@NotNull MemberRef, @NotNull String> consumer);
+}
@@ -0,0 +1,140 @@
+package org.stianloader.sml6.starplane.remapping;
+
+import java.util.Arrays;
+import java.util.function.BiConsumer;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.stianloader.remapper.MemberRef;
+
+/**
+ * A read-only lookup that maps names through a single hash table probe, as produced by {@link ChainMappingLookup#flatten()}.
+ * Unlike {@link ChainMappingLookup}, member queries are not remapped hop by hop, as the keys of the table already are
+ * the names in the source namespace of the first lookup of the chain.
+ *
+ * <p>All names are interned in a {@link SymbolTable}, which may be shared with other lookups, and the tables are keyed
+ * by the primitive ids of the names. Names which are not part of the symbol table are known to be unmapped
+ * without probing the tables. Member queries do not allocate.
+ */
+public final class FlatMappingLookup implements EnumerableMappingLookup {
+
+    /**
+     * Symbol ids of the destination names, keyed by the symbol id of the source name.
+     */
+    @NotNull
+    private final LongIntTable classes = new LongIntTable();
+    /**
+     * Symbol ids of the destination names, keyed by the symbol id of the owner and the signature id of the member.
+     */
+    @NotNull
+    private final LongIntTable members = new LongIntTable();
+    /**
+     * Signature ids, keyed by the symbol ids of the name and the descriptor.
+     */
+    @NotNull
+    private final LongIntTable signatureIds = new LongIntTable();
+    /**
+     * The symbol ids of the name and the descriptor of every signature, occupying two consecutive elements each.
+     */
+    private int @NotNull[] signatures = new int[16];
+    @NotNull
+    private final SymbolTable symbols;
+
+    FlatMappingLookup(@NotNull SymbolTable symbols) {
+        this.symbols = symbols;
+    }
+
+    @Override
+    public void forEachClassMapping(@NotNull BiConsumer<@NotNull String, @NotNull String> consumer) {
+        this.classes.forEach((srcName, dstName) -> {
+            consumer.accept(this.symbols.get((int) srcName), this.symbols.get(dstName));
+        });
+    }
+
+    @Override
+    public void forEachMemberMapping(@NotNull BiConsumer<@NotNull MemberRef, @NotNull String> consumer) {
+        this.members.forEach((srcRef, dstName) -> {
+            int signature = (int) srcRef;
+            MemberRef ref = new MemberRef(this.symbols.get((int) (srcRef >>> 32)),
+                    this.symbols.get(this.signatures[signature * 2]),
+                    this.symbols.get(this.signatures[signature * 2 + 1]));
+            consumer.accept(ref, this.symbols.get(dstName));
+        });
+    }
+
+    @Override
+    @NotNull
+    public String getRemappedClassName(@NotNull String srcName) {
+        String dstName = this.getRemappedClassNameFast(srcName);
+        return dstName == null ? srcName : dstName;
+    }
+
+    @Override
+    @Nullable
+    public String getRemappedClassNameFast(@NotNull String srcName) {
+        int srcId = this.symbols.find(srcName);
+        if (srcId < 0) {
+            return null;
+        }
+        int dstId = this.classes.get(srcId);
+        return dstId < 0 ? null : this.symbols.get(dstId);
+    }
+
+    @Override
+    @NotNull
+    public String getRemappedFieldName(@NotNull String srcOwner, @NotNull String srcName, @NotNull String srcDesc) {
+        return this.getRemappedMemberName(srcOwner, srcName, srcDesc);
+    }
+
+    @NotNull
+    private String getRemappedMemberName(@NotNull String srcOwner, @NotNull String srcName, @NotNull String srcDesc) {
+        if (this.members.size() == 0) {
+            return srcName;
+        }
+        int ownerId = this.symbols.find(srcOwner);
+        int nameId = ownerId < 0 ? -1 : this.symbols.find(srcName);
+        int descId = nameId < 0 ? -1 : this.symbols.find(srcDesc);
+        if (descId < 0) {
+            return srcName;
+        }
+        int signature = this.signatureIds.get(LongIntTable.key(nameId, descId));
+        if (signature < 0) {
+            return srcName;
+        }
+        int dstId = this.members.get(LongIntTable.key(ownerId, signature));
+        return dstId < 0 ? srcName : this.symbols.get(dstId);
+    }
+
+    @Override
+    @NotNull
+    public String getRemappedMethodName(@NotNull String srcOwner, @NotNull String srcName, @NotNull String srcDesc) {
+        return this.getRemappedMemberName(srcOwner, srcName, srcDesc);
+    }
+
+    void putClass(@NotNull String srcName, @NotNull String dstName) {
+        this.classes.put(this.symbols.intern(srcName), this.symbols.intern(dstName));
+    }
+
+    void putMember(@NotNull MemberRef srcRef, @NotNull String dstName) {
+        int nameId = this.symbols.intern(srcRef.getName());
+        int descId = this.symbols.intern(srcRef.getDesc());
+        long signatureKey = LongIntTable.key(nameId, descId);
+        int signature = this.signatureIds.get(signatureKey);
+        if (signature < 0) {
+            signature = this.signatureIds.size();
+            if (signature * 2 == this.signatures.length) {
+                this.signatures = Arrays.copyOf(this.signatures, this.signatures.length * 2);
+            }
+            this.signatures[signature * 2] = nameId;
+            this.signatures[signature * 2 + 1] = descId;
+            this.signatureIds.put(signatureKey, signature);
+        }
+        int ownerId = this.symbols.intern(srcRef.getOwner());
+        this.members.put(LongIntTable.key(ownerId, signature), this.symbols.intern(dstName));
+    }
+
+    @Override
+    public String toString() {
+        return "Flat Mapping Lookup [classes=" + this.classes.size() + ",members=" + this.members.size() + "]";
+    }
+}
@@ -0,0 +1,106 @@
+package org.stianloader.sml6.starplane.remapping;
+
+import java.util.Arrays;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * An open-addressing hash table from primitive {@code long} keys to non-negative {@code int} values,
+ * used to store mappings keyed by {@link SymbolTable} ids.
+ */
+final class LongIntTable {
+
+    interface Visitor {
+        void visit(long key, int value);
+    }
+
+    private static int @NotNull[] emptyValues(int length) {
+        int[] values = new int[length];
+        Arrays.fill(values, -1);
+        return values;
+    }
+
+    static long key(int high, int low) {
+        return ((long) high << 32) | (low & 0xFFFFFFFFL);
+    }
+
+    private static int slot(long key, int mask) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash >>> 32) & mask;
+    }
+
+    private long @NotNull[] keys = new long[8];
+    private int size;
+    /**
+     * The values of the table, where -1 marks an empty slot.
+     */
+    private int @NotNull[] values = LongIntTable.emptyValues(8);
+
+    void forEach(@NotNull Visitor visitor) {
+        for (int slot = 0; slot < this.values.length; slot++) {
+            if (this.values[slot] >= 0) {
+                visitor.visit(this.keys[slot], this.values[slot]);
+            }
+        }
+    }
+
+    /**
+     * Obtains the value associated with a key.
+     *
+     * @param key The key
+     * @return The value, or -1 if the key is not part of the table
+     */
+    int get(long key) {
+        int mask = this.values.length - 1;
+        for (int slot = LongIntTable.slot(key, mask);; slot = (slot + 1) & mask) {
+            int value = this.values[slot];
+            if (value < 0 || this.keys[slot] == key) {
+                return value;
+            }
+        }
+    }
+
+    void put(long key, int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Negative values are not supported: " + value);
+        }
+        if ((this.size + 1) * 2 > this.values.length) {
+            // Keep the load factor at or below 0.5
+            long[] oldKeys = this.keys;
+            int[] oldValues = this.values;
+            this.keys = new long[oldKeys.length * 2];
+            this.values = LongIntTable.emptyValues(oldValues.length * 2);
+            for (int slot = 0; slot < oldValues.length; slot++) {
+                if (oldValues[slot] >= 0) {
+                    this.insert(oldKeys[slot], oldValues[slot]);
+                }
+            }
+        }
+        if (this.insert(key, value)) {
+            this.size++;
+        }
+    }
+
+    /**
+     * Stores a value without resizing the table.
+     *
+     * @return True if the key was not yet part of the table
+     */
+    private boolean insert(long key, int value) {
+        int mask = this.values.length - 1;
+        for (int slot = LongIntTable.slot(key, mask);; slot = (slot + 1) & mask) {
+            if (this.values[slot] < 0) {
+                this.keys[slot] = key;
+                this.values[slot] = value;
+                return true;
+            } else if (this.keys[slot] == key) {
+                this.values[slot] = value;
+                return false;
+            }
+        }
+    }
+
+    int size() {
+        return this.size;
+    }
+}
@@ -0,0 +1,224 @@
+package org.stianloader.sml6.starplane.remapping;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.tukaani.xz.XZInputStream;
+
+/**
+ * Utility methods to read mapping files which are published in compressed form, that is as produced by
+ * {@link org.stianloader.sml6.tasks.XZCompressTask} and {@link org.stianloader.sml6.tasks.XZTarBallerTask}.
+ * The inputs are decompressed while they are being read, so no temporary files are created.
+ */
+final class MappingArchives {
+
+    private static final int TAR_BLOCK_SIZE = 512;
+
+    private static boolean isZero(byte @NotNull[] block) {
+        for (byte b : block) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @NotNull
+    private static String normalizeEntryName(@NotNull String name) {
+        while (name.startsWith("./")) {
+            name = name.substring(2);
+        }
+        return name;
+    }
+
+    /**
+     * Reads the contents of a mapping file, decompressing it according to the file name of the path. Files ending in
+     * {@code .tar.xz} or {@code .txz} are treated as xz-compressed tarballs from which a single entry is read,
+     * files ending in {@code .xz} are treated as an xz-compressed mapping file and all other files are read as-is.
+     *
+     * @param path The path the contents were read from, used to determine the format
+     * @param in The raw contents of the file
+     * @param archiveEntry The name of the tarball entry to read, or null to read the only {@code .tiny} file within the tarball.
+     * Ignored if the file is not a tarball
+     * @return The decompressed contents of the mapping file
+     * @throws IOException If the file could not be read or is malformed
+     */
+    static byte @NotNull[] read(@NotNull Path path, @NotNull InputStream in, @Nullable String archiveEntry) throws IOException {
+        String fileName = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (fileName.endsWith(".tar.xz") || fileName.endsWith(".txz")) {
+            try (InputStream xzIn = new XZInputStream(in)) {
+                return MappingArchives.readTarEntry(path, xzIn, archiveEntry);
+            }
+        } else if (fileName.endsWith(".xz")) {
+            try (InputStream xzIn = new XZInputStream(in)) {
+                return xzIn.readAllBytes();
+            }
+        }
+        return in.readAllBytes();
+    }
+
+    private static byte @NotNull[] readFully(@NotNull InputStream in, long size, @NotNull Path archive) throws IOException {
+        if (size > Integer.MAX_VALUE - 8) {
+            throw new IOException("Tar entry of " + size + " bytes within " + archive + " is too large.");
+        }
+        byte[] data = in.readNBytes((int) size);
+        if (data.length != size) {
+            throw new IOException("Unexpected end of tar archive " + archive + ".");
+        }
+        return data;
+    }
+
+    /**
+     * Obtains the value of the {@code path} record of a pax extended header.
+     */
+    @Nullable
+    private static String readPaxPath(byte @NotNull[] data) {
+        // Format: "<length> <key>=<value>\n", where the length is the amount of bytes of the entire record
+        int offset = 0;
+        while (offset < data.length) {
+            int space = offset;
+            int length = 0;
+            while (space < data.length && data[space] >= '0' && data[space] <= '9') {
+                length = length * 10 + (data[space++] - '0');
+            }
+            if (space >= data.length || data[space] != ' ' || length <= 0 || offset + length > data.length) {
+                return null;
+            }
+            int keyStart = space + 1;
+            int recordEnd = offset + length - 1; // Excluding the trailing newline
+            int equals = keyStart;
+            while (equals < recordEnd && data[equals] != '=') {
+                equals++;
+            }
+            if (equals < recordEnd && new String(data, keyStart, equals - keyStart, StandardCharsets.UTF_8).equals("path")) {
+                return new String(data, equals + 1, recordEnd - equals - 1, StandardCharsets.UTF_8);
+            }
+            offset += length;
+        }
+        return null;
+    }
+
+    @NotNull
+    private static String readTarHeaderString(byte @NotNull[] header, int offset, int length) {
+        int end = offset;
+        while (end < offset + length && header[end] != 0) {
+            end++;
+        }
+        return new String(header, offset, end - offset, StandardCharsets.UTF_8);
+    }
+
+    private static long readTarNumber(byte @NotNull[] header, int offset, int length, @NotNull Path archive) throws IOException {
+        if ((header[offset] & 0x80) != 0) {
+            // GNU base-256 encoding for large values
+            long value = header[offset] & 0x7F;
+            for (int i = offset + 1; i < offset + length; i++) {
+                value = (value << 8) | (header[i] & 0xFF);
+            }
+            return value;
+        }
+
+        long value = 0;
+        int i = offset;
+        while (i < offset + length && (header[i] == ' ' || header[i] == 0)) {
+            i++;
+        }
+        for (; i < offset + length && header[i] != ' ' && header[i] != 0; i++) {
+            if (header[i] < '0' || header[i] > '7') {
+                throw new IOException("Malformed tar header within " + archive + ": Illegal octal digit.");
+            }
+            value = (value << 3) | (header[i] - '0');
+        }
+        return value;
+    }
+
+    private static byte @NotNull[] readTarEntry(@NotNull Path archive, @NotNull InputStream in, @Nullable String archiveEntry) throws IOException {
+        if (archiveEntry != null) {
+            archiveEntry = MappingArchives.normalizeEntryName(archiveEntry);
+        }
+
+        byte[] header = new byte[MappingArchives.TAR_BLOCK_SIZE];
+        List<@NotNull String> candidates = new ArrayList<>();
+        byte[] selected = null;
+        String nextName = null;
+
+        while (true) {
+            int read = in.readNBytes(header, 0, header.length);
+            if (read == 0 || (read == header.length && MappingArchives.isZero(header))) {
+                // Either the end-of-archive marker or an archive that was truncated between two entries
+                break;
+            } else if (read != header.length) {
+                throw new IOException("Unexpected end of tar archive " + archive + ".");
+            }
+
+            long size = MappingArchives.readTarNumber(header, 124, 12, archive);
+            long padding = -size & (MappingArchives.TAR_BLOCK_SIZE - 1);
+            byte type = header[156];
+
+            if (type == 'L' || type == 'x') {
+                // GNU long name or pax extended header, both of which apply to the next entry
+                byte[] data = MappingArchives.readFully(in, size, archive);
+                in.skipNBytes(padding);
+                if (type == 'L') {
+                    nextName = MappingArchives.readTarHeaderString(data, 0, data.length);
+                } else {
+                    String paxPath = MappingArchives.readPaxPath(data);
+                    if (paxPath != null) {
+                        nextName = paxPath;
+                    }
+                }
+                continue;
+            }
+
+            String name = nextName;
+            nextName = null;
+            if (name == null) {
+                name = MappingArchives.readTarHeaderString(header, 0, 100);
+                if (MappingArchives.readTarHeaderString(header, 257, 5).equals("ustar")) {
+                    String prefix = MappingArchives.readTarHeaderString(header, 345, 155);
+                    if (!prefix.isEmpty()) {
+                        name = prefix + "/" + name;
+                    }
+                }
+            }
+            name = MappingArchives.normalizeEntryName(name);
+
+            boolean regularFile = type == '0' || type == 0 || type == '7';
+            boolean matches = archiveEntry == null ? name.endsWith(".tiny") : name.equals(archiveEntry);
+            if (!regularFile || !matches) {
+                in.skipNBytes(size + padding);
+                continue;
+            }
+
+            byte[] data = MappingArchives.readFully(in, size, archive);
+            in.skipNBytes(padding);
+            if (archiveEntry != null) {
+                return data;
+            }
+            // Keep going in order to detect ambiguous tarballs
+            candidates.add(name);
+            if (selected == null) {
+                selected = data;
+            }
+        }
+
+        if (archiveEntry != null) {
+            throw new IOException("Tar archive " + archive + " does not contain the entry '" + archiveEntry + "'.");
+        } else if (selected == null) {
+            throw new IOException("Tar archive " + archive + " does not contain any .tiny file.");
+        } else if (candidates.size() != 1) {
+            throw new IOException("Tar archive " + archive + " contains multiple .tiny files (" + String.join(", ", candidates) + "), the entry to read must be specified explicitly.");
+        }
+        return selected;
+    }
+
+    private MappingArchives() {
+        throw new AssertionError();
+    }
+}
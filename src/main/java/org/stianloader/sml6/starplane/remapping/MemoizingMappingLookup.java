@@ -0,0 +1,199 @@
+package org.stianloader.sml6.starplane.remapping;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.stianloader.remapper.MappingLookup;
+
+/**
+ * A decorator which memoizes the results of another {@link MappingLookup}, intended for expensive lookups such as
+ * {@link ChainMappingLookup}.
+ *
+ * <p>The results are stored in fixed-size, direct-mapped tables: each query hashes to exactly one slot, which holds
+ * at most one result. A colliding query simply replaces the result in the slot, so the memory used by the cache is
+ * bounded by its capacity. Slots hold immutable entries and are read and written without any locking, which means that
+ * concurrent remapping threads never contend on the cache. In the worst case, a concurrent write causes the result
+ * of another thread to be discarded, in which case it will be computed again on the next query.
+ *
+ * <p>As the results of the delegate are cached, the mappings of the delegate must not change after the first query.
+ */
+public class MemoizingMappingLookup implements MappingLookup {
+
+    private static final class ClassEntry {
+        @NotNull
+        private final String dstName;
+        @NotNull
+        private final String srcName;
+
+        private ClassEntry(@NotNull String srcName, @NotNull String dstName) {
+            this.srcName = srcName;
+            this.dstName = dstName;
+        }
+    }
+
+    /**
+     * A memoized result of {@link MappingLookup#getRemappedClassNameFast(String)}, which is null if the delegate
+     * reported the class as unmapped. Kept apart from {@link ClassEntry}, as an explicit identity mapping is distinct
+     * from the absence of a mapping for the fast lookup.
+     */
+    private static final class FastClassEntry {
+        @Nullable
+        private final String dstName;
+        @NotNull
+        private final String srcName;
+
+        private FastClassEntry(@NotNull String srcName, @Nullable String dstName) {
+            this.srcName = srcName;
+            this.dstName = dstName;
+        }
+    }
+
+    private static final class MemberEntry {
+        @NotNull
+        private final String dstName;
+        @NotNull
+        private final String srcDesc;
+        @NotNull
+        private final String srcName;
+        @NotNull
+        private final String srcOwner;
+
+        private MemberEntry(@NotNull String srcOwner, @NotNull String srcName, @NotNull String srcDesc, @NotNull String dstName) {
+            this.srcOwner = srcOwner;
+            this.srcName = srcName;
+            this.srcDesc = srcDesc;
+            this.dstName = dstName;
+        }
+
+        private boolean matches(@NotNull String srcOwner, @NotNull String srcName, @NotNull String srcDesc) {
+            return this.srcName.equals(srcName) && this.srcOwner.equals(srcOwner) && this.srcDesc.equals(srcDesc);
+        }
+    }
+
+    private static int index(int hash, int mask) {
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    private static int memberHash(@NotNull String srcOwner, @NotNull String srcName, @NotNull String srcDesc) {
+        return (srcOwner.hashCode() * 31 + srcName.hashCode()) * 31 + srcDesc.hashCode();
+    }
+
+    private final ClassEntry @NotNull[] classes;
+    @NotNull
+    private final MappingLookup delegate;
+    private final FastClassEntry @NotNull[] fastClasses;
+    private final MemberEntry @NotNull[] fields;
+    @NotNull
+    private final LongAdder hits = new LongAdder();
+    private final int mask;
+    private final MemberEntry @NotNull[] methods;
+    @NotNull
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Constructor.
+     *
+     * @param delegate The lookup whose results should be memoized
+     * @param capacity The amount of results to store for class, fast class, field and method lookups each.
+     * Rounded up to the next power of two.
+     */
+    public MemoizingMappingLookup(@NotNull MappingLookup delegate, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive, but is " + capacity);
+        }
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        if (size <= 0) {
+            throw new IllegalArgumentException("capacity too large: " + capacity);
+        }
+        this.delegate = delegate;
+        this.mask = size - 1;
+        this.classes = new ClassEntry[size];
+        this.fastClasses = new FastClassEntry[size];
+        this.fields = new MemberEntry[size];
+        this.methods = new MemberEntry[size];
+    }
+
+    /**
+     * Obtains the amount of queries that were answered from the cache.
+     *
+     * @return The amount of cache hits
+     */
+    public long getHits() {
+        return this.hits.sum();
+    }
+
+    /**
+     * Obtains the amount of queries that had to be forwarded to the delegate.
+     *
+     * @return The amount of cache misses
+     */
+    public long getMisses() {
+        return this.misses.sum();
+    }
+
+    @Override
+    @NotNull
+    public String getRemappedClassName(@NotNull String srcName) {
+        int index = MemoizingMappingLookup.index(srcName.hashCode(), this.mask);
+        ClassEntry entry = this.classes[index];
+        if (entry != null && entry.srcName.equals(srcName)) {
+            this.hits.increment();
+            return entry.dstName;
+        }
+        this.misses.increment();
+        String dstName = this.delegate.getRemappedClassName(srcName);
+        this.classes[index] = new ClassEntry(srcName, dstName);
+        return dstName;
+    }
+
+    @Override
+    @Nullable
+    public String getRemappedClassNameFast(@NotNull String srcName) {
+        int index = MemoizingMappingLookup.index(srcName.hashCode(), this.mask);
+        FastClassEntry entry = this.fastClasses[index];
+        if (entry != null && entry.srcName.equals(srcName)) {
+            this.hits.increment();
+            return entry.dstName;
+        }
+        this.misses.increment();
+        String dstName = this.delegate.getRemappedClassNameFast(srcName);
+        this.fastClasses[index] = new FastClassEntry(srcName, dstName);
+        return dstName;
+    }
+
+    @Override
+    @NotNull
+    public String getRemappedFieldName(@NotNull String srcOwner, @NotNull String srcName, @NotNull String srcDesc) {
+        int index = MemoizingMappingLookup.index(MemoizingMappingLookup.memberHash(srcOwner, srcName, srcDesc), this.mask);
+        MemberEntry entry = this.fields[index];
+        if (entry != null && entry.matches(srcOwner, srcName, srcDesc)) {
+            this.hits.increment();
+            return entry.dstName;
+        }
+        this.misses.increment();
+        String dstName = this.delegate.getRemappedFieldName(srcOwner, srcName, srcDesc);
+        this.fields[index] = new MemberEntry(srcOwner, srcName, srcDesc, dstName);
+        return dstName;
+    }
+
+    @Override
+    @NotNull
+    public String getRemappedMethodName(@NotNull String srcOwner, @NotNull String srcName, @NotNull String srcDesc) {
+        int index = MemoizingMappingLookup.index(MemoizingMappingLookup.memberHash(srcOwner, srcName, srcDesc), this.mask);
+        MemberEntry entry = this.methods[index];
+        if (entry != null && entry.matches(srcOwner, srcName, srcDesc)) {
+            this.hits.increment();
+            return entry.dstName;
+        }
+        this.misses.increment();
+        String dstName = this.delegate.getRemappedMethodName(srcOwner, srcName, srcDesc);
+        this.methods[index] = new MemberEntry(srcOwner, srcName, srcDesc, dstName);
+        return dstName;
+    }
+
+    @Override
+    public String toString() {
+        return "Memoizing Mapping Lookup [delegate=" + this.delegate + ",hits=" + this.getHits() + ",misses=" + this.getMisses() + "]";
+    }
+}
@@ -1,29 +1,114 @@
 package org.stianloader.sml6.starplane.remapping;
 
+import java.util.function.BiConsumer;
+
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
-import org.stianloader.remapper.MappingLookup;
 import org.stianloader.remapper.MappingSink;
 import org.stianloader.remapper.MemberRef;
 
 import net.fabricmc.mappingio.tree.MappingTreeView;
 import net.fabricmc.mappingio.tree.MappingTreeView.ClassMappingView;
 import net.fabricmc.mappingio.tree.MappingTreeView.FieldMappingView;
+import net.fabricmc.mappingio.tree.MappingTreeView.MemberMappingView;
 import net.fabricmc.mappingio.tree.MappingTreeView.MethodMappingView;
 
-public class ReadOnlyMIOMappingLookup implements MappingLookup, MappingSink {
+public class ReadOnlyMIOMappingLookup implements EnumerableMappingLookup, MappingSink {
     private final int dstNamespace;
+    /**
+     * The mappings of the namespace pair, keyed by the names in the source namespace. Null if the lookups
+     * should be forwarded to the tree instead.
+     */
+    @Nullable
+    private final FlatMappingLookup index;
     @NotNull
     private final MappingTreeView mappingIOTree;
     private final int srcNamespace;
 
     public ReadOnlyMIOMappingLookup(@NotNull MappingTreeView mappingIOTree, int srcNamespace, int dstNamespace) {
+        this(mappingIOTree, srcNamespace, dstNamespace, false);
+    }
+
+    /**
+     * Constructor.
+     *
+     * <p>If {@code indexed} is true, the mappings of the namespace pair are copied into a dedicated hash table
+     * when the lookup is constructed, from which all further lookups are served. This avoids the cost of looking
+     * up elements by a non-primary namespace within the tree, but means that changes made to the tree afterwards are
+     * not reflected by this lookup. Members which lack a descriptor in the source namespace are not indexed.
+     *
+     * @param mappingIOTree The tree to read the mappings from
+     * @param srcNamespace The id of the source namespace
+     * @param dstNamespace The id of the destination namespace
+     * @param indexed Whether to index the mappings of the namespace pair in advance
+     */
+    public ReadOnlyMIOMappingLookup(@NotNull MappingTreeView mappingIOTree, int srcNamespace, int dstNamespace, boolean indexed) {
         this.mappingIOTree = mappingIOTree;
         this.srcNamespace = srcNamespace;
         this.dstNamespace = dstNamespace;
         if (this.srcNamespace == this.dstNamespace) {
             throw new IllegalArgumentException("srcNamespace == dstNamespace: " + srcNamespace + ", " + dstNamespace);
         }
+        this.index = indexed ? this.buildIndex() : null;
+    }
+
+    private void acceptMember(@NotNull String srcOwner, @NotNull MemberMappingView member, @NotNull BiConsumer<@NotNull MemberRef, @NotNull String> consumer) {
+        String srcName = member.getName(this.srcNamespace);
+        String srcDesc = member.getDesc(this.srcNamespace);
+        String dstName = member.getName(this.dstNamespace);
+        if (srcName != null && srcDesc != null && dstName != null && !srcName.equals(dstName)) {
+            consumer.accept(new MemberRef(srcOwner, srcName, srcDesc), dstName);
+        }
+    }
+
+    @NotNull
+    private FlatMappingLookup buildIndex() {
+        FlatMappingLookup index = new FlatMappingLookup(new SymbolTable());
+        for (ClassMappingView cmv : this.mappingIOTree.getClasses()) {
+            String srcOwner = cmv.getName(this.srcNamespace);
+            if (srcOwner == null) {
+                continue;
+            }
+            String dstName = cmv.getName(this.dstNamespace);
+            if (dstName != null) {
+                // Identity mappings are kept so that #getRemappedClassNameFast behaves the same as when querying the tree
+                index.putClass(srcOwner, dstName);
+            }
+            for (FieldMappingView fmv : cmv.getFields()) {
+                this.acceptMember(srcOwner, fmv, index::putMember);
+            }
+            for (MethodMappingView mmv : cmv.getMethods()) {
+                this.acceptMember(srcOwner, mmv, index::putMember);
+            }
+        }
+        return index;
+    }
+
+    @Override
+    public void forEachClassMapping(@NotNull BiConsumer<@NotNull String, @NotNull String> consumer) {
+        for (ClassMappingView cmv : this.mappingIOTree.getClasses()) {
+            String srcName = cmv.getName(this.srcNamespace);
+            String dstName = cmv.getName(this.dstNamespace);
+            if (srcName != null && dstName != null && !srcName.equals(dstName)) {
+                consumer.accept(srcName, dstName);
+            }
+        }
+    }
+
+    @Override
+    public void forEachMemberMapping(@NotNull BiConsumer<@NotNull MemberRef, @NotNull String> consumer) {
+        for (ClassMappingView cmv : this.mappingIOTree.getClasses()) {
+            String srcOwner = cmv.getName(this.srcNamespace);
+            if (srcOwner == null) {
+                continue;
+            }
+            for (FieldMappingView fmv : cmv.getFields()) {
+                this.acceptMember(srcOwner, fmv, consumer);
+            }
+            for (MethodMappingView mmv : cmv.getMethods()) {
+                this.acceptMember(srcOwner, mmv, consumer);
+            }
+        }
     }
 
     @Override
@@ -36,6 +121,10 @@ public class ReadOnlyMIOMappingLookup implements MappingLookup, MappingSink {
     @Override
     @Nullable
     public String getRemappedClassNameFast(@NotNull String srcName) {
+        FlatMappingLookup index = this.index;
+        if (index != null) {
+            return index.getRemappedClassNameFast(srcName);
+        }
         ClassMappingView cmv = this.mappingIOTree.getClass(srcName, this.srcNamespace);
         if (cmv != null) {
             return cmv.getName(this.dstNamespace);
@@ -46,6 +135,10 @@ public class ReadOnlyMIOMappingLookup implements MappingLookup, MappingSink {
     @Override
     @NotNull
     public String getRemappedFieldName(@NotNull String srcOwner, @NotNull String srcName, @NotNull String srcDesc) {
+        FlatMappingLookup index = this.index;
+        if (index != null) {
+            return index.getRemappedFieldName(srcOwner, srcName, srcDesc);
+        }
         FieldMappingView fmv = this.mappingIOTree.getField(srcOwner, srcName, srcDesc, this.srcNamespace);
         if (fmv == null) {
             return srcName;
@@ -57,6 +150,10 @@ public class ReadOnlyMIOMappingLookup implements MappingLookup, MappingSink {
     @Override
     @NotNull
     public String getRemappedMethodName(@NotNull String srcOwner, @NotNull String srcName, @NotNull String srcDesc) {
+        FlatMappingLookup index = this.index;
+        if (index != null) {
+            return index.getRemappedMethodName(srcOwner, srcName, srcDesc);
+        }
         MethodMappingView mmv = this.mappingIOTree.getMethod(srcOwner, srcName, srcDesc, this.srcNamespace);
         if (mmv == null) {
             return srcName;
@@ -0,0 +1,164 @@
+package org.stianloader.sml6.starplane.remapping;
+
+import java.util.Arrays;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.stianloader.remapper.MemberRef;
+
+/**
+ * An index of the fields annotated with RemapClassReference or RemapMemberReference, keyed by the owner, name and
+ * descriptor of the annotated field in the source namespace. The index is filled by
+ * {@link StarplaneAnnotationRemapper#remapFieldAnnotations} and queried by
+ * {@link StarplaneAnnotationRemapper#inlineReferenceSources} in order to resolve calls to ReferenceSource.getStringValue().
+ *
+ * <p>When a single index is filled with the annotated fields of all classes of a jar before any ReferenceSource call
+ * is inlined, calls which are assigned to a field of another class resolve just like calls which are assigned to a field
+ * of the same class.
+ *
+ * <p>Like {@link FlatMappingLookup}, the names of the annotated fields are interned in a {@link SymbolTable} and the
+ * fields are keyed by the primitive ids of their names, so that queries do not allocate. Fields may be added by multiple
+ * threads at once. Queries may be run by multiple threads at once, but not while fields are being added.
+ */
+public final class StarplaneAnnotationIndex {
+
+    /**
+     * The internal names of the referenced classes, indexed by field id. Null for fields that are not annotated
+     * with RemapClassReference.
+     */
+    @Nullable
+    private String @NotNull[] classReferences = new String[8];
+    /**
+     * Field ids, keyed by the symbol id of the owner and the signature id of the annotated field.
+     */
+    @NotNull
+    private final LongIntTable fieldIds = new LongIntTable();
+    /**
+     * The format of the referenced members, indexed by field id. Null for fields whose annotation does not define a format.
+     */
+    @Nullable
+    private String @NotNull[] memberReferenceFormats = new String[8];
+    /**
+     * The referenced members, indexed by field id. Null for fields that are not annotated with RemapMemberReference.
+     */
+    @Nullable
+    private MemberRef @NotNull[] memberReferences = new MemberRef[8];
+    /**
+     * Signature ids, keyed by the symbol ids of the name and the descriptor of the annotated field.
+     */
+    @NotNull
+    private final LongIntTable signatureIds = new LongIntTable();
+    @NotNull
+    private final SymbolTable symbols = new SymbolTable();
+
+    /**
+     * Obtains the id of a field without adding it to the index.
+     *
+     * @return The id of the field, or -1 if the field is not part of the index
+     */
+    private int findField(@NotNull String owner, @NotNull String name, @NotNull String desc) {
+        int ownerId = this.symbols.find(owner);
+        int nameId = ownerId < 0 ? -1 : this.symbols.find(name);
+        int descId = nameId < 0 ? -1 : this.symbols.find(desc);
+        if (descId < 0) {
+            return -1;
+        }
+        int signature = this.signatureIds.get(LongIntTable.key(nameId, descId));
+        return signature < 0 ? -1 : this.fieldIds.get(LongIntTable.key(ownerId, signature));
+    }
+
+    /**
+     * Obtains the class referenced by a field annotated with RemapClassReference.
+     *
+     * @param owner The internal name of the owner of the annotated field, in the source namespace
+     * @param name The name of the annotated field, in the source namespace
+     * @param desc The descriptor of the annotated field, in the source namespace
+     * @return The internal name of the referenced class in the source namespace, or null if the field is not known to be annotated
+     */
+    @Nullable
+    public String getClassReference(@NotNull String owner, @NotNull String name, @NotNull String desc) {
+        int field = this.findField(owner, name, desc);
+        return field < 0 ? null : this.classReferences[field];
+    }
+
+    /**
+     * Obtains the member referenced by a field annotated with RemapMemberReference.
+     *
+     * @param owner The internal name of the owner of the annotated field, in the source namespace
+     * @param name The name of the annotated field, in the source namespace
+     * @param desc The descriptor of the annotated field, in the source namespace
+     * @return The referenced member in the source namespace, or null if the field is not known to be annotated
+     */
+    @Nullable
+    public MemberRef getMemberReference(@NotNull String owner, @NotNull String name, @NotNull String desc) {
+        int field = this.findField(owner, name, desc);
+        return field < 0 ? null : this.memberReferences[field];
+    }
+
+    /**
+     * Obtains the format in which the member referenced by a field annotated with RemapMemberReference is inlined.
+     *
+     * @param owner The internal name of the owner of the annotated field, in the source namespace
+     * @param name The name of the annotated field, in the source namespace
+     * @param desc The descriptor of the annotated field, in the source namespace
+     * @return The name of the format, or null if the field is not known to be annotated or if the annotation does not define a format
+     */
+    @Nullable
+    public String getMemberReferenceFormat(@NotNull String owner, @NotNull String name, @NotNull String desc) {
+        int field = this.findField(owner, name, desc);
+        return field < 0 ? null : this.memberReferenceFormats[field];
+    }
+
+    /**
+     * Obtains the id of a field, adding it to the index if it is not yet part of it. The caller must hold the lock of the index.
+     *
+     * @return The id of the field
+     */
+    private int internField(@NotNull MemberRef field) {
+        int nameId = this.symbols.intern(field.getName());
+        int descId = this.symbols.intern(field.getDesc());
+        long signatureKey = LongIntTable.key(nameId, descId);
+        int signature = this.signatureIds.get(signatureKey);
+        if (signature < 0) {
+            signature = this.signatureIds.size();
+            this.signatureIds.put(signatureKey, signature);
+        }
+
+        long fieldKey = LongIntTable.key(this.symbols.intern(field.getOwner()), signature);
+        int id = this.fieldIds.get(fieldKey);
+        if (id < 0) {
+            id = this.fieldIds.size();
+            if (id == this.classReferences.length) {
+                this.classReferences = Arrays.copyOf(this.classReferences, id * 2);
+                this.memberReferences = Arrays.copyOf(this.memberReferences, id * 2);
+                this.memberReferenceFormats = Arrays.copyOf(this.memberReferenceFormats, id * 2);
+            }
+            this.fieldIds.put(fieldKey, id);
+        }
+        return id;
+    }
+
+    synchronized void putClassReference(@NotNull MemberRef field, @NotNull String referencedClass) {
+        this.classReferences[this.internField(field)] = referencedClass;
+    }
+
+    synchronized void putMemberReference(@NotNull MemberRef field, @NotNull MemberRef referencedMember, @Nullable String format) {
+        int id = this.internField(field);
+        this.memberReferences[id] = referencedMember;
+        this.memberReferenceFormats[id] = format;
+    }
+
+    /**
+     * Obtains the amount of annotated fields within the index.
+     *
+     * @return The amount of annotated fields
+     */
+    public synchronized int size() {
+        return this.fieldIds.size();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "Starplane Annotation Index [fields=" + this.fieldIds.size() + ",symbols=" + this.symbols.size() + "]";
+    }
+}
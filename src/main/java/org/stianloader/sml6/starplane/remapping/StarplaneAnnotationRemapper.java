@@ -1,10 +1,11 @@
 package org.stianloader.sml6.starplane.remapping;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 
 import org.jetbrains.annotations.NotNull;
 import org.objectweb.asm.Opcodes;
@@ -30,7 +31,57 @@ public class StarplaneAnnotationRemapper {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(StarplaneAnnotationRemapper.class);
 
+    @NotNull
+    private static final String REFERENCE_SOURCE = "de/geolykt/starloader/starplane/annotations/ReferenceSource";
+    @NotNull
+    private static final String REMAP_CLASS_REFERENCE_ANNOTATION = "Lde/geolykt/starloader/starplane/annotations/RemapClassReference;";
+    @NotNull
+    private static final String REMAP_MEMBER_REFERENCE_ANNOTATION = "Lde/geolykt/starloader/starplane/annotations/RemapMemberReference;";
+    @NotNull
+    private static final String STARPLANE_REOBFUSCATE_REFERENCE_ANNOTATION = "Lde/geolykt/starloader/starplane/annotations/StarplaneReobfuscateReference;";
+
+    /**
+     * The UTF-8 constants of which at least one is present in the constant pool of every class that
+     * {@link #apply(ClassNode, Remapper, StringBuilder)} has an effect on.
+     */
+    private static final byte @NotNull[] @NotNull[] TRIGGER_CONSTANTS = {
+        StarplaneAnnotationRemapper.INLINED_REFERENCE_SOURCE_MARKER_ANNOTATION.getBytes(StandardCharsets.UTF_8),
+        StarplaneAnnotationRemapper.REFERENCE_SOURCE.getBytes(StandardCharsets.UTF_8),
+        StarplaneAnnotationRemapper.REMAP_CLASS_REFERENCE_ANNOTATION.getBytes(StandardCharsets.UTF_8),
+        StarplaneAnnotationRemapper.REMAP_MEMBER_REFERENCE_ANNOTATION.getBytes(StandardCharsets.UTF_8),
+        StarplaneAnnotationRemapper.STARPLANE_REOBFUSCATE_REFERENCE_ANNOTATION.getBytes(StandardCharsets.UTF_8)
+    };
+
+    /**
+     * Runs the starplane annotation pass on a single class, that is both
+     * {@link #remapFieldAnnotations(ClassNode, Remapper, StringBuilder, StarplaneAnnotationIndex)} and
+     * {@link #inlineReferenceSources(ClassNode, Remapper, StringBuilder, StarplaneAnnotationIndex)}. Calls to
+     * ReferenceSource.getStringValue() only resolve if they are assigned to a field of the same class.
+     *
+     * @param node The class, which must not yet be remapped
+     * @param remapper The remapper whose lookup is used to remap the references
+     * @param sharedBuilder A builder which is used for remapping descriptors
+     */
     public static void apply(@NotNull ClassNode node, @NotNull Remapper remapper, @NotNull StringBuilder sharedBuilder) {
+        StarplaneAnnotationIndex index = new StarplaneAnnotationIndex();
+        StarplaneAnnotationRemapper.remapFieldAnnotations(node, remapper, sharedBuilder, index);
+        StarplaneAnnotationRemapper.inlineReferenceSources(node, remapper, sharedBuilder, index);
+    }
+
+    /**
+     * Remaps the values of the RemapClassReference, RemapMemberReference and StarplaneReobfuscateReference annotations
+     * of the fields of a class and records the references of the annotated fields in an index.
+     *
+     * <p>In order to resolve calls to ReferenceSource.getStringValue() which are assigned to fields of other classes,
+     * this method needs to be invoked on all classes before
+     * {@link #inlineReferenceSources(ClassNode, Remapper, StringBuilder, StarplaneAnnotationIndex)} is invoked on any class.
+     *
+     * @param node The class, which must not yet be remapped
+     * @param remapper The remapper whose lookup is used to remap the references
+     * @param sharedBuilder A builder which is used for remapping descriptors
+     * @param index The index to record the annotated fields in
+     */
+    public static void remapFieldAnnotations(@NotNull ClassNode node, @NotNull Remapper remapper, @NotNull StringBuilder sharedBuilder, @NotNull StarplaneAnnotationIndex index) {
         MethodNode clinitMethod = null;
         for (MethodNode method : node.methods) {
             if (method.name.equals("<clinit>")) {
@@ -39,168 +90,74 @@ public class StarplaneAnnotationRemapper {
             }
         }
 
-        Map<MemberRef, MemberRef> memberMapRequests = new HashMap<>();
-        Map<MemberRef, String> memberMapFormat = new HashMap<>();
-        Map<MemberRef, String> classMapRequests = new HashMap<>();
+        // Names of the fields annotated with StarplaneReobfuscateReference, whose values are assigned within <clinit>
+        Set<String> reobfuscatedFields = new HashSet<>();
 
         for (FieldNode field : node.fields) {
             Iterable<AnnotationNode> annotations = field.invisibleAnnotations;
             if (annotations == null) {
                 continue;
             }
+            annotationLoop:
             for (AnnotationNode annotation : annotations) {
-                if (annotation.desc.equals("Lde/geolykt/starloader/starplane/annotations/StarplaneReobfuscateReference;")) {
+                switch (annotation.desc) {
+                case StarplaneAnnotationRemapper.STARPLANE_REOBFUSCATE_REFERENCE_ANNOTATION:
                     if (clinitMethod == null) {
                         throw new IllegalStateException("Illegal bytecode: " + node.name + '.' + field.name + ' ' + field.desc + ": No clinit found");
                     }
-                    for (AbstractInsnNode insn : clinitMethod.instructions) {
-                        if (insn.getOpcode() == Opcodes.PUTSTATIC) {
-                            FieldInsnNode fieldInsn = (FieldInsnNode) insn;
-                            if (!fieldInsn.desc.equals("Ljava/lang/String;") || !field.name.equals(fieldInsn.name)) {
-                                continue;
-                            }
-                            LdcInsnNode ldc = (LdcInsnNode) fieldInsn.getPrevious();
-                            String oldValue = ldc.cst.toString();
-                            if (oldValue == null) {
-                                throw new InternalError();
-                            }
-                            ldc.cst = StarplaneAnnotationRemapper.remapReference(remapper, oldValue, sharedBuilder);
-                        }
+                    reobfuscatedFields.add(field.name);
+                    break annotationLoop;
+                case StarplaneAnnotationRemapper.REMAP_CLASS_REFERENCE_ANNOTATION:
+                    if (!StarplaneAnnotationRemapper.collectClassReference(node, field, annotation, remapper, sharedBuilder, index)) {
+                        break annotationLoop;
                     }
                     break;
-                } else if (annotation.desc.equals("Lde/geolykt/starloader/starplane/annotations/RemapClassReference;")) {
-                    if (annotation.values == null || annotation.values.size() == 0) {
-                        StarplaneAnnotationRemapper.LOGGER.error("Field {}.{}:{} is annotated with de/geolykt/starloader/starplane/annotations/RemapClassReference, but neither the 'name' nor the 'type' value of the annotation is set.", node.name, field.name, field.desc);
-                        break;
-                    }
-                    if (annotation.values.size() == 4) {
-                        StarplaneAnnotationRemapper.LOGGER.error("Field {}.{}:{} is annotated with de/geolykt/starloader/starplane/annotations/RemapClassReference, but both the 'name' and the 'type' value of the annotation is set. Consider only setting one of these values.", node.name, field.name, field.desc);
-                        break;
-                    }
-                    String typeName;
-                    if (annotation.values.get(0).equals("name")) {
-                        typeName = ((String) annotation.values.get(1)).replace('.', '/');
-                        annotation.values.set(1, Remapper.remapInternalName(remapper.getLookup(), typeName, sharedBuilder));
-                    } else if (annotation.values.get(0).equals("type")) {
-                        typeName = ((Type) annotation.values.get(1)).getInternalName();
-                        // Type remapping is thankfully performed by stianloader-remapper already
-                    } else {
-                        StarplaneAnnotationRemapper.LOGGER.error("Erroneous annotation key: " + annotation.values.get(0) + " for RemapClassReference. Are you depending on the wrong starplane-annotations version?");
-                        break;
-                    }
-                    classMapRequests.put(new MemberRef(node.name, field.name, field.desc), typeName);
-                } else if (annotation.desc.equals("Lde/geolykt/starloader/starplane/annotations/RemapMemberReference;")) {
-                    if (annotation.values == null) {
-                        StarplaneAnnotationRemapper.LOGGER.error("Field {}.{}:{} is annotated with de/geolykt/starloader/starplane/annotations/RemapMemberReference, but does not define any of the required values.", node.name, field.name, field.desc);
-                        break;
-                    }
-                    if (annotation.values.size() >= 10) {
-                        StarplaneAnnotationRemapper.LOGGER.error("Field {}.{}:{} is annotated with de/geolykt/starloader/starplane/annotations/RemapMemberReference, but more than the required values of the annotation is set. Consider removing duplicates.", node.name, field.name, field.desc);
-                        break;
-                    }
-
-                    String typeName = null;
-                    String memberName = null;
-                    String memberDesc = null;
-                    String format = null;
-
-                    int ordinalTypeName = 0;
-                    int ordinalMemberName = 0;
-                    int ordinalMemberDesc = 0;
-
-                    for (int i = 0; i < annotation.values.size(); i += 2) {
-                        String valueName = ((String) annotation.values.get(i));
-                        if (valueName.equals("ownerType")) {
-                            typeName = ((Type) annotation.values.get(i + 1)).getInternalName();
-                        } else if (valueName.equals("owner")) {
-                            typeName = ((String) annotation.values.get(i + 1)).replace('.', '/');
-                            ordinalTypeName = i + 1;
-                        } else if (valueName.equals("name")) {
-                            memberName = (String) annotation.values.get(i + 1);
-                            ordinalMemberName = i + 1;
-                        } else if (valueName.equals("desc")) {
-                            if (memberDesc != null) {
-                                StarplaneAnnotationRemapper.LOGGER.error("Field {}.{}:{} is annotated with de/geolykt/starloader/starplane/annotations/RemapMemberReference, but multiple values contain descriptor-giving values. Consider removing duplicated.", node.name, field.name, field.desc);
-                                break;
-                            }
-                            memberDesc = (String) annotation.values.get(i + 1);
-                            ordinalMemberDesc = i + 1;
-                        } else if (valueName.equals("descType")) {
-                            if (memberDesc != null) {
-                                StarplaneAnnotationRemapper.LOGGER.error("Field {}.{}:{} is annotated with de/geolykt/starloader/starplane/annotations/RemapMemberReference, but multiple values contain descriptor-giving values. Consider removing duplicated.", node.name, field.name, field.desc);
-                                break;
-                            }
-                            memberDesc = ((Type) annotation.values.get(i + 1)).getDescriptor();
-                        } else if (valueName.equals("methodDesc")) {
-                            AnnotationNode methodDesc = (AnnotationNode) annotation.values.get(i + 1);
-                            int args;
-                            int ret;
-                            if (methodDesc.values.get(0).equals("args")) {
-                                args = 1;
-                                ret = 3;
-                            } else {
-                                ret = 1;
-                                args = 3;
-                            }
-                            String argDesc = "";
-                            List<?> arglist = (List<?>) methodDesc.values.get(args);
-                            for (int j = 0; j < arglist.size(); j++) {
-                                Type arg = (Type) arglist.get(j);
-                                if (arg == null) {
-                                    throw new AssertionError();
-                                }
-                                argDesc += arg.getDescriptor();
-                            }
-                            if (memberDesc != null) {
-                                StarplaneAnnotationRemapper.LOGGER.error("Field {}.{}:{} is annotated with de/geolykt/starloader/starplane/annotations/RemapMemberReference, but multiple values contain descriptor-giving values. Consider removing duplicated.", node.name, field.name, field.desc);
-                                break;
-                            }
-                            memberDesc = "(" + argDesc + ")" + ((Type) methodDesc.values.get(ret)).getDescriptor();
-                        } else if (valueName.equals("format")) {
-                            format = ((String[]) annotation.values.get(i + 1))[1];
-                        } else {
-                            StarplaneAnnotationRemapper.LOGGER.error("Erroneous annotation value: {} for RemapMemberReference. Are you depending on the wrong starplane-annotations version?", valueName);
-                            break;
-                        }
-                    }
-                    if (typeName == null) {
-                        StarplaneAnnotationRemapper.LOGGER.error("Field {}.{}:{} is annotated with de/geolykt/starloader/starplane/annotations/RemapMemberReference, but neither the 'owner' nor the 'ownerType' value of the annotation is set. Consider setting one of these values.", node.name, field.name, field.desc);
-                        break;
-                    }
-
-                    MemberRef targetTriple = new MemberRef(typeName, Objects.requireNonNull(memberName, "memberName == null"), Objects.requireNonNull(memberDesc, "memberDesc == null"));
-                    MemberRef fieldTriple = new MemberRef(node.name, field.name, field.desc);
-                    memberMapFormat.put(fieldTriple, format);
-                    memberMapRequests.put(fieldTriple, targetTriple);
-
-                    if (ordinalTypeName != 0) {
-                        annotation.values.set(ordinalTypeName, remapper.getLookup().getRemappedClassName(typeName));
-                    }
-
-                    if (ordinalMemberName != 0) {
-                        if (memberDesc.codePointAt(0) == '(') {
-                            annotation.values.set(ordinalMemberName, remapper.getLookup().getRemappedMethodName(typeName, memberName, memberDesc));
-                        } else {
-                            annotation.values.set(ordinalMemberName, remapper.getLookup().getRemappedFieldName(typeName, memberName, memberDesc));
-                        }
+                case StarplaneAnnotationRemapper.REMAP_MEMBER_REFERENCE_ANNOTATION:
+                    if (!StarplaneAnnotationRemapper.collectMemberReference(node, field, annotation, remapper, sharedBuilder, index)) {
+                        break annotationLoop;
                     }
+                    break;
+                default:
+                    break;
+                }
+            }
+        }
 
-                    if (ordinalMemberDesc != 0) {
-                        if (memberDesc.codePointAt(0) == '(') {
-                            annotation.values.set(ordinalMemberDesc, Remapper.getRemappedMethodDescriptor(remapper.getLookup(), memberDesc, sharedBuilder));
-                        } else {
-                            annotation.values.set(ordinalMemberDesc, Remapper.getRemappedFieldDescriptor(remapper.getLookup(), memberDesc, sharedBuilder));
-                        }
-                    }
+        if (!reobfuscatedFields.isEmpty()) {
+            for (AbstractInsnNode insn : Objects.requireNonNull(clinitMethod).instructions) {
+                if (insn.getOpcode() != Opcodes.PUTSTATIC) {
+                    continue;
                 }
+                FieldInsnNode fieldInsn = (FieldInsnNode) insn;
+                if (!fieldInsn.desc.equals("Ljava/lang/String;") || !reobfuscatedFields.contains(fieldInsn.name)) {
+                    continue;
+                }
+                LdcInsnNode ldc = (LdcInsnNode) fieldInsn.getPrevious();
+                String oldValue = ldc.cst.toString();
+                if (oldValue == null) {
+                    throw new InternalError();
+                }
+                ldc.cst = StarplaneAnnotationRemapper.remapReference(remapper, oldValue, sharedBuilder);
             }
         }
+    }
 
+    /**
+     * Replaces calls to ReferenceSource.getStringValue() with the remapped reference of the field the value is assigned to.
+     * The references of the fields are obtained from an index filled by
+     * {@link #remapFieldAnnotations(ClassNode, Remapper, StringBuilder, StarplaneAnnotationIndex)}.
+     *
+     * @param node The class, which must not yet be remapped
+     * @param remapper The remapper whose lookup is used to remap the references
+     * @param sharedBuilder A builder which is used for remapping descriptors
+     * @param index The index of annotated fields
+     */
+    public static void inlineReferenceSources(@NotNull ClassNode node, @NotNull Remapper remapper, @NotNull StringBuilder sharedBuilder, @NotNull StarplaneAnnotationIndex index) {
         for (MethodNode method : node.methods) {
             for (AbstractInsnNode insn = method.instructions.getFirst(); insn != null; insn = insn.getNext()) {
                 if (insn.getOpcode() == Opcodes.INVOKESTATIC) {
                     MethodInsnNode minsn = (MethodInsnNode) insn;
-                    if (!minsn.owner.equals("de/geolykt/starloader/starplane/annotations/ReferenceSource")) {
+                    if (!minsn.owner.equals(StarplaneAnnotationRemapper.REFERENCE_SOURCE)) {
                         continue;
                     }
                     if (!minsn.name.equals("getStringValue") || !minsn.desc.equals("()Ljava/lang/String;")) {
@@ -236,16 +193,16 @@ public class StarplaneAnnotationRemapper {
                     StarplaneAnnotationRemapper.LOGGER.error("Method {}.{} {} contains a call to ReferenceSource.getStringValue() that is not immediately assigned to a field.", node.name, method.name, method.desc);
                     continue;
                 }
-                MemberRef assignmentTriple = new MemberRef(((FieldInsnNode) nextInsn).owner, ((FieldInsnNode) nextInsn).name, ((FieldInsnNode) nextInsn).desc);
-                String cl = classMapRequests.get(assignmentTriple);
+                FieldInsnNode assignment = (FieldInsnNode) nextInsn;
+                String cl = index.getClassReference(assignment.owner, assignment.name, assignment.desc);
                 String replacementLdc;
                 if (cl != null) {
                     replacementLdc = Remapper.remapInternalName(remapper.getLookup(), cl, sharedBuilder);
                 } else {
-                    MemberRef member = memberMapRequests.get(assignmentTriple);
-                    String format = memberMapFormat.get(assignmentTriple);
+                    MemberRef member = index.getMemberReference(assignment.owner, assignment.name, assignment.desc);
+                    String format = index.getMemberReferenceFormat(assignment.owner, assignment.name, assignment.desc);
                     if (member == null || format == null) {
-                        StarplaneAnnotationRemapper.LOGGER.error("Method {}.{} {} contains a call to ReferenceSource.getStringValue() that is assigned to {}.{} {} which is not annotated with a starplane remapping annotation. (Note: this feature does not work across classes!)", node.name, method.name, method.desc, assignmentTriple.getOwner(), assignmentTriple.getName(), assignmentTriple.getDesc());
+                        StarplaneAnnotationRemapper.LOGGER.error("Method {}.{} {} contains a call to ReferenceSource.getStringValue() that is assigned to {}.{} {} which is not annotated with a starplane remapping annotation. (Note: fields of other classes are only known if the classes are remapped together, for example through StarplaneJarRemapper)", node.name, method.name, method.desc, assignment.owner, assignment.name, assignment.desc);
                         continue;
                     }
                     String remappedOwner = Remapper.remapInternalName(remapper.getLookup(), member.getOwner(), sharedBuilder);
@@ -276,7 +233,7 @@ public class StarplaneAnnotationRemapper {
                             replacementLdc = remappedOwner + "." + remappedName + " " + remappedDesc;
                         }
                     } else {
-                        StarplaneAnnotationRemapper.LOGGER.error("Method {}.{} {} contains a call to ReferenceSource.getStringValue() that is assigned to {}.{} {} which uses an unsupported format. (Are you using the right version of starplane-annotations?)", node.name, method.name, method.desc, assignmentTriple.getOwner(), assignmentTriple.getName(), assignmentTriple.getDesc());
+                        StarplaneAnnotationRemapper.LOGGER.error("Method {}.{} {} contains a call to ReferenceSource.getStringValue() that is assigned to {}.{} {} which uses an unsupported format. (Are you using the right version of starplane-annotations?)", node.name, method.name, method.desc, assignment.owner, assignment.name, assignment.desc);
                         continue;
                     }
                 }
@@ -290,6 +247,235 @@ public class StarplaneAnnotationRemapper {
         }
     }
 
+    /**
+     * Processes a field annotated with RemapClassReference.
+     *
+     * @return False if the annotation is malformed, in which case the remaining annotations of the field are skipped
+     */
+    private static boolean collectClassReference(@NotNull ClassNode node, @NotNull FieldNode field, @NotNull AnnotationNode annotation,
+            @NotNull Remapper remapper, @NotNull StringBuilder sharedBuilder, @NotNull StarplaneAnnotationIndex index) {
+        if (annotation.values == null || annotation.values.size() == 0) {
+            StarplaneAnnotationRemapper.LOGGER.error("Field {}.{}:{} is annotated with de/geolykt/starloader/starplane/annotations/RemapClassReference, but neither the 'name' nor the 'type' value of the annotation is set.", node.name, field.name, field.desc);
+            return false;
+        }
+        if (annotation.values.size() == 4) {
+            StarplaneAnnotationRemapper.LOGGER.error("Field {}.{}:{} is annotated with de/geolykt/starloader/starplane/annotations/RemapClassReference, but both the 'name' and the 'type' value of the annotation is set. Consider only setting one of these values.", node.name, field.name, field.desc);
+            return false;
+        }
+        String typeName;
+        if (annotation.values.get(0).equals("name")) {
+            typeName = ((String) annotation.values.get(1)).replace('.', '/');
+            annotation.values.set(1, Remapper.remapInternalName(remapper.getLookup(), typeName, sharedBuilder));
+        } else if (annotation.values.get(0).equals("type")) {
+            typeName = ((Type) annotation.values.get(1)).getInternalName();
+            // Type remapping is thankfully performed by stianloader-remapper already
+        } else {
+            StarplaneAnnotationRemapper.LOGGER.error("Erroneous annotation key: " + annotation.values.get(0) + " for RemapClassReference. Are you depending on the wrong starplane-annotations version?");
+            return false;
+        }
+        index.putClassReference(new MemberRef(node.name, field.name, field.desc), typeName);
+        return true;
+    }
+
+    /**
+     * Processes a field annotated with RemapMemberReference.
+     *
+     * @return False if the annotation is malformed, in which case the remaining annotations of the field are skipped
+     */
+    private static boolean collectMemberReference(@NotNull ClassNode node, @NotNull FieldNode field, @NotNull AnnotationNode annotation,
+            @NotNull Remapper remapper, @NotNull StringBuilder sharedBuilder, @NotNull StarplaneAnnotationIndex index) {
+        if (annotation.values == null) {
+            StarplaneAnnotationRemapper.LOGGER.error("Field {}.{}:{} is annotated with de/geolykt/starloader/starplane/annotations/RemapMemberReference, but does not define any of the required values.", node.name, field.name, field.desc);
+            return false;
+        }
+        if (annotation.values.size() >= 10) {
+            StarplaneAnnotationRemapper.LOGGER.error("Field {}.{}:{} is annotated with de/geolykt/starloader/starplane/annotations/RemapMemberReference, but more than the required values of the annotation is set. Consider removing duplicates.", node.name, field.name, field.desc);
+            return false;
+        }
+
+        String typeName = null;
+        String memberName = null;
+        String memberDesc = null;
+        String format = null;
+
+        int ordinalTypeName = 0;
+        int ordinalMemberName = 0;
+        int ordinalMemberDesc = 0;
+
+        for (int i = 0; i < annotation.values.size(); i += 2) {
+            String valueName = ((String) annotation.values.get(i));
+            if (valueName.equals("ownerType")) {
+                typeName = ((Type) annotation.values.get(i + 1)).getInternalName();
+            } else if (valueName.equals("owner")) {
+                typeName = ((String) annotation.values.get(i + 1)).replace('.', '/');
+                ordinalTypeName = i + 1;
+            } else if (valueName.equals("name")) {
+                memberName = (String) annotation.values.get(i + 1);
+                ordinalMemberName = i + 1;
+            } else if (valueName.equals("desc")) {
+                if (memberDesc != null) {
+                    StarplaneAnnotationRemapper.LOGGER.error("Field {}.{}:{} is annotated with de/geolykt/starloader/starplane/annotations/RemapMemberReference, but multiple values contain descriptor-giving values. Consider removing duplicated.", node.name, field.name, field.desc);
+                    break;
+                }
+                memberDesc = (String) annotation.values.get(i + 1);
+                ordinalMemberDesc = i + 1;
+            } else if (valueName.equals("descType")) {
+                if (memberDesc != null) {
+                    StarplaneAnnotationRemapper.LOGGER.error("Field {}.{}:{} is annotated with de/geolykt/starloader/starplane/annotations/RemapMemberReference, but multiple values contain descriptor-giving values. Consider removing duplicated.", node.name, field.name, field.desc);
+                    break;
+                }
+                memberDesc = ((Type) annotation.values.get(i + 1)).getDescriptor();
+            } else if (valueName.equals("methodDesc")) {
+                AnnotationNode methodDesc = (AnnotationNode) annotation.values.get(i + 1);
+                int args;
+                int ret;
+                if (methodDesc.values.get(0).equals("args")) {
+                    args = 1;
+                    ret = 3;
+                } else {
+                    ret = 1;
+                    args = 3;
+                }
+                String argDesc = "";
+                List<?> arglist = (List<?>) methodDesc.values.get(args);
+                for (int j = 0; j < arglist.size(); j++) {
+                    Type arg = (Type) arglist.get(j);
+                    if (arg == null) {
+                        throw new AssertionError();
+                    }
+                    argDesc += arg.getDescriptor();
+                }
+                if (memberDesc != null) {
+                    StarplaneAnnotationRemapper.LOGGER.error("Field {}.{}:{} is annotated with de/geolykt/starloader/starplane/annotations/RemapMemberReference, but multiple values contain descriptor-giving values. Consider removing duplicated.", node.name, field.name, field.desc);
+                    break;
+                }
+                memberDesc = "(" + argDesc + ")" + ((Type) methodDesc.values.get(ret)).getDescriptor();
+            } else if (valueName.equals("format")) {
+                format = ((String[]) annotation.values.get(i + 1))[1];
+            } else {
+                StarplaneAnnotationRemapper.LOGGER.error("Erroneous annotation value: {} for RemapMemberReference. Are you depending on the wrong starplane-annotations version?", valueName);
+                break;
+            }
+        }
+        if (typeName == null) {
+            StarplaneAnnotationRemapper.LOGGER.error("Field {}.{}:{} is annotated with de/geolykt/starloader/starplane/annotations/RemapMemberReference, but neither the 'owner' nor the 'ownerType' value of the annotation is set. Consider setting one of these values.", node.name, field.name, field.desc);
+            return false;
+        }
+
+        MemberRef targetTriple = new MemberRef(typeName, Objects.requireNonNull(memberName, "memberName == null"), Objects.requireNonNull(memberDesc, "memberDesc == null"));
+        MemberRef fieldTriple = new MemberRef(node.name, field.name, field.desc);
+        index.putMemberReference(fieldTriple, targetTriple, format);
+
+        if (ordinalTypeName != 0) {
+            annotation.values.set(ordinalTypeName, remapper.getLookup().getRemappedClassName(typeName));
+        }
+
+        if (ordinalMemberName != 0) {
+            if (memberDesc.codePointAt(0) == '(') {
+                annotation.values.set(ordinalMemberName, remapper.getLookup().getRemappedMethodName(typeName, memberName, memberDesc));
+            } else {
+                annotation.values.set(ordinalMemberName, remapper.getLookup().getRemappedFieldName(typeName, memberName, memberDesc));
+            }
+        }
+
+        if (ordinalMemberDesc != 0) {
+            if (memberDesc.codePointAt(0) == '(') {
+                annotation.values.set(ordinalMemberDesc, Remapper.getRemappedMethodDescriptor(remapper.getLookup(), memberDesc, sharedBuilder));
+            } else {
+                annotation.values.set(ordinalMemberDesc, Remapper.getRemappedFieldDescriptor(remapper.getLookup(), memberDesc, sharedBuilder));
+            }
+        }
+        return true;
+    }
+
+    private static boolean isTriggerConstant(byte @NotNull[] classFile, int offset, int length) {
+        triggerLoop:
+        for (byte[] trigger : StarplaneAnnotationRemapper.TRIGGER_CONSTANTS) {
+            if (trigger.length != length) {
+                continue;
+            }
+            for (int i = length - 1; i >= 0; i--) {
+                // The constants share their prefix, so they are compared back to front
+                if (classFile[offset + i] != trigger[i]) {
+                    continue triggerLoop;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether {@link #apply(ClassNode, Remapper, StringBuilder)} could have an effect on a class by scanning the
+     * constant pool of the class file for the descriptors of the starplane annotations and for the
+     * ReferenceSource class. No tree is built and no constant is decoded, so this check is far cheaper than the
+     * annotation pass itself. Classes for which this method returns false can skip the annotation pass entirely.
+     *
+     * @param classFile The contents of the class file
+     * @return False if the annotation pass definitely has no effect on the class, true if it may have an effect
+     * or if the class file is malformed
+     */
+    public static boolean mayUseStarplaneAnnotations(byte @NotNull[] classFile) {
+        if (classFile.length < 10) {
+            return true;
+        }
+        int count = ((classFile[8] & 0xFF) << 8) | (classFile[9] & 0xFF);
+        int offset = 10;
+        for (int i = 1; i < count; i++) {
+            if (offset >= classFile.length) {
+                return true;
+            }
+            int tag = classFile[offset++];
+            int size;
+            switch (tag) {
+            case 1: // Utf8
+                if (offset + 2 > classFile.length) {
+                    return true;
+                }
+                int length = ((classFile[offset] & 0xFF) << 8) | (classFile[offset + 1] & 0xFF);
+                offset += 2;
+                if (offset + length > classFile.length) {
+                    return true;
+                }
+                if (StarplaneAnnotationRemapper.isTriggerConstant(classFile, offset, length)) {
+                    return true;
+                }
+                size = length;
+                break;
+            case 7: // Class
+            case 8: // String
+            case 16: // MethodType
+            case 19: // Module
+            case 20: // Package
+                size = 2;
+                break;
+            case 15: // MethodHandle
+                size = 3;
+                break;
+            case 3: // Integer
+            case 4: // Float
+            case 9: // Fieldref
+            case 10: // Methodref
+            case 11: // InterfaceMethodref
+            case 12: // NameAndType
+            case 17: // Dynamic
+            case 18: // InvokeDynamic
+                size = 4;
+                break;
+            case 5: // Long
+            case 6: // Double
+                size = 8;
+                i++; // Occupies two entries
+                break;
+            default:
+                // Unknown constant, the size of which is unknown
+                return true;
+            }
+            offset += size;
+        }
+        return false;
+    }
+
     @NotNull
     private static String remapReference(@NotNull Remapper remapper, @NotNull String string, @NotNull StringBuilder sharedBuilder) {
         int indexofDot = string.indexOf('.');
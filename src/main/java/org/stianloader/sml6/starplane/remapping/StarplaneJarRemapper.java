@@ -0,0 +1,182 @@
+package org.stianloader.sml6.starplane.remapping;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.jetbrains.annotations.NotNull;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.tree.ClassNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.stianloader.remapper.MappingLookup;
+import org.stianloader.remapper.Remapper;
+import org.stianloader.sml6.starplane.ParallelJarWriter;
+
+/**
+ * Remaps all classes of a jar, running the {@link StarplaneAnnotationRemapper} pass on every class before it is
+ * remapped by a {@link Remapper}.
+ *
+ * <p>The jar is processed in two passes. The first pass reads all classes and remaps the annotations of their fields,
+ * recording the annotated fields in a {@link StarplaneAnnotationIndex} shared by all classes. The second pass inlines
+ * calls to ReferenceSource.getStringValue() and remaps the classes. Thus these calls also resolve if the value is
+ * assigned to a field of another class of the jar.
+ *
+ * <p>Classes whose constant pool does not reference any of the starplane annotations are not passed to
+ * {@link StarplaneAnnotationRemapper}, see {@link StarplaneAnnotationRemapper#mayUseStarplaneAnnotations(byte[])}.
+ *
+ * <p>Classes are read and remapped concurrently. Every worker thread owns its {@link Remapper} and its {@link StringBuilder},
+ * so that the builder passed to the methods of {@link StarplaneAnnotationRemapper} and
+ * {@link Remapper#remapNode(ClassNode, StringBuilder)} is never shared between threads. The lookup however is shared
+ * by all workers and thus needs to support concurrent queries. The output jar is written through a {@link ParallelJarWriter},
+ * which means that resources are copied from the input jar and that the output is deterministic.
+ *
+ * <p>Class files within {@code META-INF/} (such as the classes of multi-release jars) as well as {@code module-info.class}
+ * are copied as-is.
+ */
+public final class StarplaneJarRemapper {
+
+    @FunctionalInterface
+    private static interface ClassTask {
+        void run(int index, @NotNull Remapper remapper, @NotNull StringBuilder sharedBuilder);
+    }
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StarplaneJarRemapper.class);
+
+    private static boolean isRemappedEntry(@NotNull ZipEntry entry) {
+        String name = entry.getName();
+        return !entry.isDirectory() && name.endsWith(".class") && !name.startsWith("META-INF/") && !name.equals("module-info.class");
+    }
+
+    @NotNull
+    private final MappingLookup lookup;
+    private final boolean passthroughResources;
+    private final int threads;
+
+    /**
+     * Constructor.
+     *
+     * @param lookup The lookup to remap the classes with
+     * @param threads The amount of worker threads to use
+     * @param passthroughResources Whether to copy the compressed bytes of non-class entries as-is instead of recompressing them
+     */
+    public StarplaneJarRemapper(@NotNull MappingLookup lookup, int threads, boolean passthroughResources) {
+        this.lookup = lookup;
+        this.threads = Math.max(1, threads);
+        this.passthroughResources = passthroughResources;
+    }
+
+    /**
+     * Runs a task on every class of a jar, distributing the classes over the worker threads of a pool.
+     *
+     * @param pool The pool to run the workers in
+     * @param classCount The amount of classes
+     * @param task The task to run on every class
+     * @throws IOException If a task failed with an {@link UncheckedIOException}
+     */
+    private void forEachClass(@NotNull ForkJoinPool pool, int classCount, @NotNull ClassTask task) throws IOException {
+        AtomicInteger nextIndex = new AtomicInteger();
+        List<CompletableFuture<Void>> workers = new ArrayList<>();
+        for (int i = 0; i < this.threads; i++) {
+            workers.add(CompletableFuture.runAsync(() -> {
+                Remapper remapper = new Remapper(this.lookup);
+                StringBuilder sharedBuilder = new StringBuilder();
+                for (int index = nextIndex.getAndIncrement(); index < classCount; index = nextIndex.getAndIncrement()) {
+                    task.run(index, remapper, sharedBuilder);
+                }
+            }, pool));
+        }
+
+        for (CompletableFuture<Void> worker : workers) {
+            try {
+                worker.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof UncheckedIOException) {
+                    throw ((UncheckedIOException) e.getCause()).getCause();
+                }
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Remaps a jar.
+     *
+     * @param inputJar The jar to remap
+     * @param outputJar The file to write the remapped jar to, which is replaced if it already exists
+     * @throws IOException If the input jar could not be read or the output jar could not be written
+     */
+    public void remap(@NotNull Path inputJar, @NotNull Path outputJar) throws IOException {
+        long startTime = System.nanoTime();
+        List<ClassNode> nodes;
+        Set<String> passthroughClassEntries = new HashSet<>();
+        ForkJoinPool pool = new ForkJoinPool(this.threads);
+        try (ZipFile jar = new ZipFile(inputJar.toFile())) {
+            List<ZipEntry> classEntries = new ArrayList<>();
+            for (Enumeration<? extends ZipEntry> e = jar.entries(); e.hasMoreElements();) {
+                ZipEntry entry = e.nextElement();
+                if (StarplaneJarRemapper.isRemappedEntry(entry)) {
+                    classEntries.add(entry);
+                } else if (entry.getName().endsWith(".class")) {
+                    passthroughClassEntries.add(entry.getName());
+                }
+            }
+
+            ClassNode[] remappedNodes = new ClassNode[classEntries.size()];
+            boolean[] annotatedClasses = new boolean[remappedNodes.length];
+            StarplaneAnnotationIndex annotationIndex = new StarplaneAnnotationIndex();
+            this.forEachClass(pool, remappedNodes.length, (index, remapper, sharedBuilder) -> {
+                ZipEntry entry = classEntries.get(index);
+                byte[] classFile;
+                try (InputStream in = jar.getInputStream(entry)) {
+                    classFile = in.readAllBytes();
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Unable to read " + entry.getName(), e);
+                }
+                ClassNode node = new ClassNode();
+                new ClassReader(classFile).accept(node, 0);
+                if (StarplaneAnnotationRemapper.mayUseStarplaneAnnotations(classFile)) {
+                    annotatedClasses[index] = true;
+                    StarplaneAnnotationRemapper.remapFieldAnnotations(node, remapper, sharedBuilder, annotationIndex);
+                }
+                remappedNodes[index] = node;
+            });
+            // All annotated fields are known at this point, so ReferenceSource calls resolve across classes
+            this.forEachClass(pool, remappedNodes.length, (index, remapper, sharedBuilder) -> {
+                ClassNode node = remappedNodes[index];
+                if (annotatedClasses[index]) {
+                    StarplaneAnnotationRemapper.inlineReferenceSources(node, remapper, sharedBuilder, annotationIndex);
+                }
+                remapper.remapNode(node, sharedBuilder);
+            });
+            nodes = Arrays.asList(remappedNodes);
+            if (StarplaneJarRemapper.LOGGER.isDebugEnabled()) {
+                int annotatedClassCount = 0;
+                for (boolean annotated : annotatedClasses) {
+                    if (annotated) {
+                        annotatedClassCount++;
+                    }
+                }
+                StarplaneJarRemapper.LOGGER.debug("{} of {} classes of {} reference starplane annotations, {} fields are annotated.", annotatedClassCount, remappedNodes.length, inputJar.getFileName(), annotationIndex.size());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        new ParallelJarWriter(this.threads, this.passthroughResources).write(nodes, passthroughClassEntries, inputJar, outputJar);
+        StarplaneJarRemapper.LOGGER.info("Remapped {} classes of {} in {} ms.", nodes.size(), inputJar.getFileName(), (System.nanoTime() - startTime) / 1_000_000L);
+    }
+}
@@ -0,0 +1,478 @@
+package org.stianloader.sml6.starplane.remapping;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.stianloader.remapper.MemberRef;
+import org.stianloader.remapper.Remapper;
+import org.stianloader.remapper.SimpleMappingLookup;
+
+/**
+ * A precompiled, memory-mappable form of a tiny mappings file, holding the mappings in both the forward
+ * and the reversed orientation. Both orientations share the same string pool.
+ *
+ * <p>The file consists of a pool of UTF-8 encoded strings followed by four open-addressing hash tables: the class
+ * and member tables of the forward orientation and the class and member tables of the reversed orientation.
+ * Every slot of a table stores the {@link String#hashCode() hash code} of the key as well as the indices of the
+ * involved strings within the pool, so that queries can be answered without decoding anything but the result.
+ * Decoded strings are cached, so that every string within the pool is decoded at most once.
+ * Every table is accompanied by a {@link BloomFilter} over the hash codes of its keys, which is consulted before
+ * the table is probed. As most queried names are unmapped, the bulk of queries never touch the tables.
+ *
+ * <p>Instances are immutable and may be queried from multiple threads.
+ */
+final class StarplaneMappingIndex {
+
+    /**
+     * A single orientation of the mappings.
+     */
+    final class Table {
+        private final int classFilter;
+        private final int classFilterWords;
+        private final int classSlots;
+        private final int classTable;
+        private final int memberFilter;
+        private final int memberFilterWords;
+        private final int memberSlots;
+        private final int memberTable;
+
+        private Table(int classTable, int classSlots, int classFilter, int classFilterWords,
+                int memberTable, int memberSlots, int memberFilter, int memberFilterWords) {
+            this.classTable = classTable;
+            this.classSlots = classSlots;
+            this.classFilter = classFilter;
+            this.classFilterWords = classFilterWords;
+            this.memberTable = memberTable;
+            this.memberSlots = memberSlots;
+            this.memberFilter = memberFilter;
+            this.memberFilterWords = memberFilterWords;
+        }
+
+        void forEachClassMapping(@NotNull BiConsumer<@NotNull String, @NotNull String> consumer) {
+            for (int slot = 0; slot < this.classSlots; slot++) {
+                int base = this.classTable + slot * StarplaneMappingIndex.CLASS_SLOT_SIZE;
+                int src = StarplaneMappingIndex.this.buffer.getInt(base + 4);
+                if (src != 0) {
+                    consumer.accept(StarplaneMappingIndex.this.string(src - 1), StarplaneMappingIndex.this.string(StarplaneMappingIndex.this.buffer.getInt(base + 8)));
+                }
+            }
+        }
+
+        void forEachMemberMapping(@NotNull BiConsumer<@NotNull MemberRef, @NotNull String> consumer) {
+            ByteBuffer buffer = StarplaneMappingIndex.this.buffer;
+            for (int slot = 0; slot < this.memberSlots; slot++) {
+                int base = this.memberTable + slot * StarplaneMappingIndex.MEMBER_SLOT_SIZE;
+                int owner = buffer.getInt(base + 4);
+                if (owner != 0) {
+                    MemberRef ref = new MemberRef(StarplaneMappingIndex.this.string(owner - 1),
+                            StarplaneMappingIndex.this.string(buffer.getInt(base + 8)),
+                            StarplaneMappingIndex.this.string(buffer.getInt(base + 12)));
+                    consumer.accept(ref, StarplaneMappingIndex.this.string(buffer.getInt(base + 16)));
+                }
+            }
+        }
+
+        /**
+         * Obtains the table of the opposite orientation.
+         *
+         * @return The inverse table
+         */
+        @NotNull
+        Table getInverse() {
+            return StarplaneMappingIndex.this.getTable(this == StarplaneMappingIndex.this.forward);
+        }
+
+        @Nullable
+        String getClassName(@NotNull String srcName) {
+            if (this.classSlots == 0) {
+                return null;
+            }
+            ByteBuffer buffer = StarplaneMappingIndex.this.buffer;
+            int hash = srcName.hashCode();
+            if (!BloomFilter.mightContain(buffer, this.classFilter, this.classFilterWords, hash)) {
+                return null;
+            }
+            int mask = this.classSlots - 1;
+            for (int slot = StarplaneMappingIndex.spread(hash) & mask;; slot = (slot + 1) & mask) {
+                int base = this.classTable + slot * StarplaneMappingIndex.CLASS_SLOT_SIZE;
+                int src = buffer.getInt(base + 4);
+                if (src == 0) {
+                    return null;
+                } else if (buffer.getInt(base) == hash && StarplaneMappingIndex.this.stringEquals(src - 1, srcName)) {
+                    return StarplaneMappingIndex.this.string(buffer.getInt(base + 8));
+                }
+            }
+        }
+
+        @Nullable
+        String getMemberName(@NotNull String srcOwner, @NotNull String srcName, @NotNull String srcDesc) {
+            if (this.memberSlots == 0) {
+                return null;
+            }
+            ByteBuffer buffer = StarplaneMappingIndex.this.buffer;
+            int hash = StarplaneMappingIndex.memberHash(srcOwner, srcName, srcDesc);
+            if (!BloomFilter.mightContain(buffer, this.memberFilter, this.memberFilterWords, hash)) {
+                return null;
+            }
+            int mask = this.memberSlots - 1;
+            for (int slot = StarplaneMappingIndex.spread(hash) & mask;; slot = (slot + 1) & mask) {
+                int base = this.memberTable + slot * StarplaneMappingIndex.MEMBER_SLOT_SIZE;
+                int owner = buffer.getInt(base + 4);
+                if (owner == 0) {
+                    return null;
+                } else if (buffer.getInt(base) == hash
+                        && StarplaneMappingIndex.this.stringEquals(buffer.getInt(base + 8), srcName)
+                        && StarplaneMappingIndex.this.stringEquals(owner - 1, srcOwner)
+                        && StarplaneMappingIndex.this.stringEquals(buffer.getInt(base + 12), srcDesc)) {
+                    return StarplaneMappingIndex.this.string(buffer.getInt(base + 16));
+                }
+            }
+        }
+    }
+
+    /**
+     * Hash code, source name index + 1 (0 marks an empty slot), destination name index.
+     */
+    private static final int CLASS_SLOT_SIZE = 12;
+    private static final int MAGIC = 0x53504958; // "SPIX"
+    /**
+     * Hash code, owner index + 1 (0 marks an empty slot), source name index, source descriptor index, destination name index.
+     */
+    private static final int MEMBER_SLOT_SIZE = 20;
+    private static final int VERSION = 2;
+
+    /**
+     * Compiles the mappings of a tiny file into the index format.
+     *
+     * @param classes The class mappings of the file in the order they are declared in, every mapping occupying two consecutive
+     * elements: the source name and the destination name
+     * @param members The member mappings of the file in the order they are declared in, every mapping occupying four consecutive
+     * elements: the owner, the descriptor, the source name and the destination name
+     * @return The compiled index
+     */
+    static byte @NotNull[] compile(@NotNull List<@NotNull String> classes, @NotNull List<@NotNull String> members) throws IOException {
+        SimpleMappingLookup forwardClasses = new SimpleMappingLookup();
+        Map<String, String> forwardClassMap = new LinkedHashMap<>();
+        Map<String, String> reversedClassMap = new LinkedHashMap<>();
+        for (int i = 0; i < classes.size(); i += 2) {
+            String srcName = classes.get(i);
+            String dstName = classes.get(i + 1);
+            forwardClasses.remapClass(srcName, dstName);
+            forwardClassMap.put(srcName, dstName);
+            reversedClassMap.put(dstName, srcName);
+        }
+
+        // Keyed by owner, name and descriptor joined by NUL characters, so that later declarations override earlier ones
+        Map<String, String[]> forwardMembers = new LinkedHashMap<>();
+        Map<String, String[]> reversedMembers = new LinkedHashMap<>();
+        StringBuilder descBuilder = new StringBuilder();
+        for (int i = 0; i < members.size(); i += 4) {
+            String owner = members.get(i);
+            String desc = members.get(i + 1);
+            String srcName = members.get(i + 2);
+            String dstName = members.get(i + 3);
+            forwardMembers.put(owner + '\0' + srcName + '\0' + desc, new String[] {owner, srcName, desc, dstName});
+
+            String reversedOwner = forwardClasses.getRemappedClassName(owner);
+            String reversedDesc;
+            if (desc.codePointAt(0) == '(') {
+                reversedDesc = Remapper.getRemappedMethodDescriptor(forwardClasses, desc, descBuilder);
+            } else {
+                reversedDesc = Remapper.getRemappedFieldDescriptor(forwardClasses, desc, descBuilder);
+            }
+            reversedMembers.put(reversedOwner + '\0' + dstName + '\0' + reversedDesc, new String[] {reversedOwner, dstName, reversedDesc, srcName});
+        }
+
+        List<String> pool = new ArrayList<>();
+        Map<String, Integer> poolIndices = new HashMap<>();
+
+        int[] forwardClassTable = StarplaneMappingIndex.compileClassTable(forwardClassMap, pool, poolIndices);
+        int[] forwardMemberTable = StarplaneMappingIndex.compileMemberTable(forwardMembers, pool, poolIndices);
+        int[] reversedClassTable = StarplaneMappingIndex.compileClassTable(reversedClassMap, pool, poolIndices);
+        int[] reversedMemberTable = StarplaneMappingIndex.compileMemberTable(reversedMembers, pool, poolIndices);
+
+        ByteArrayOutputStream blob = new ByteArrayOutputStream();
+        int[] offsets = new int[pool.size() + 1];
+        for (int i = 0; i < pool.size(); i++) {
+            blob.write(pool.get(i).getBytes(StandardCharsets.UTF_8));
+            offsets[i + 1] = blob.size();
+        }
+        while (blob.size() % 4 != 0) {
+            blob.write(0);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(StarplaneMappingIndex.MAGIC);
+            out.writeInt(StarplaneMappingIndex.VERSION);
+            out.writeInt(pool.size());
+            for (int offset : offsets) {
+                out.writeInt(offset);
+            }
+            out.writeInt(blob.size());
+            blob.writeTo(out);
+            int[][] tables = new int[][] {forwardClassTable, forwardMemberTable, reversedClassTable, reversedMemberTable};
+            for (int[] table : tables) {
+                out.writeInt(table.length);
+                for (int value : table) {
+                    out.writeInt(value);
+                }
+            }
+            for (int i = 0; i < tables.length; i++) {
+                long[] filter = StarplaneMappingIndex.compileFilter(tables[i], i % 2 == 0 ? StarplaneMappingIndex.CLASS_SLOT_SIZE : StarplaneMappingIndex.MEMBER_SLOT_SIZE);
+                out.writeInt(filter.length);
+                for (long word : filter) {
+                    out.writeLong(word);
+                }
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static int @NotNull[] compileClassTable(@NotNull Map<String, String> mappings, @NotNull List<String> pool, @NotNull Map<String, Integer> poolIndices) {
+        int slots = StarplaneMappingIndex.tableSize(mappings.size());
+        int[] table = new int[slots * (StarplaneMappingIndex.CLASS_SLOT_SIZE / 4)];
+        for (Map.Entry<String, String> mapping : mappings.entrySet()) {
+            int hash = mapping.getKey().hashCode();
+            int slot = StarplaneMappingIndex.spread(hash) & (slots - 1);
+            while (table[slot * 3 + 1] != 0) {
+                slot = (slot + 1) & (slots - 1);
+            }
+            table[slot * 3] = hash;
+            table[slot * 3 + 1] = StarplaneMappingIndex.poolIndex(mapping.getKey(), pool, poolIndices) + 1;
+            table[slot * 3 + 2] = StarplaneMappingIndex.poolIndex(mapping.getValue(), pool, poolIndices);
+        }
+        return table;
+    }
+
+    private static long @NotNull[] compileFilter(int @NotNull[] table, int slotSize) {
+        int slotInts = slotSize / 4;
+        int entries = 0;
+        for (int i = 0; i < table.length; i += slotInts) {
+            if (table[i + 1] != 0) {
+                entries++;
+            }
+        }
+        long[] filter = new long[BloomFilter.words(entries)];
+        for (int i = 0; i < table.length; i += slotInts) {
+            if (table[i + 1] != 0) {
+                BloomFilter.add(filter, table[i]);
+            }
+        }
+        return filter;
+    }
+
+    private static int @NotNull[] compileMemberTable(@NotNull Map<String, String[]> mappings, @NotNull List<String> pool, @NotNull Map<String, Integer> poolIndices) {
+        int slots = StarplaneMappingIndex.tableSize(mappings.size());
+        int[] table = new int[slots * (StarplaneMappingIndex.MEMBER_SLOT_SIZE / 4)];
+        for (String[] mapping : mappings.values()) {
+            int hash = StarplaneMappingIndex.memberHash(mapping[0], mapping[1], mapping[2]);
+            int slot = StarplaneMappingIndex.spread(hash) & (slots - 1);
+            while (table[slot * 5 + 1] != 0) {
+                slot = (slot + 1) & (slots - 1);
+            }
+            table[slot * 5] = hash;
+            table[slot * 5 + 1] = StarplaneMappingIndex.poolIndex(mapping[0], pool, poolIndices) + 1;
+            table[slot * 5 + 2] = StarplaneMappingIndex.poolIndex(mapping[1], pool, poolIndices);
+            table[slot * 5 + 3] = StarplaneMappingIndex.poolIndex(mapping[2], pool, poolIndices);
+            table[slot * 5 + 4] = StarplaneMappingIndex.poolIndex(mapping[3], pool, poolIndices);
+        }
+        return table;
+    }
+
+    private static int memberHash(@NotNull String owner, @NotNull String name, @NotNull String desc) {
+        return (owner.hashCode() * 31 + name.hashCode()) * 31 + desc.hashCode();
+    }
+
+    /**
+     * Memory-maps an index file.
+     *
+     * @param file The file to map
+     * @return The mapped index
+     * @throws IOException If the file could not be read or is not a valid index file
+     */
+    @NotNull
+    static StarplaneMappingIndex open(@NotNull Path file) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        try {
+            return new StarplaneMappingIndex(buffer);
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("Truncated mapping index: " + file, e);
+        }
+    }
+
+    /**
+     * Reads an index that is held in memory, as returned by {@link #compile(List, List)}.
+     *
+     * @param index The compiled index
+     * @return The index
+     * @throws IOException If the index is not valid
+     */
+    @NotNull
+    static StarplaneMappingIndex of(byte @NotNull[] index) throws IOException {
+        try {
+            return new StarplaneMappingIndex(ByteBuffer.wrap(index));
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("Truncated mapping index", e);
+        }
+    }
+
+    private static int poolIndex(@NotNull String string, @NotNull List<String> pool, @NotNull Map<String, Integer> poolIndices) {
+        Integer index = poolIndices.get(string);
+        if (index == null) {
+            index = pool.size();
+            pool.add(string);
+            poolIndices.put(string, index);
+        }
+        return index;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Computes the amount of slots of a table with the given amount of entries, keeping the load factor at or below 0.5.
+     */
+    private static int tableSize(int entries) {
+        if (entries == 0) {
+            return 0;
+        }
+        return Integer.highestOneBit(entries) << 2;
+    }
+
+    /**
+     * Writes an index file, replacing any existing file in an atomic fashion.
+     *
+     * @param file The file to write to
+     * @param index The compiled index, as returned by {@link #compile(List, List)}
+     * @throws IOException If the file could not be written
+     */
+    static void write(@NotNull Path file, byte @NotNull[] index) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temp, index);
+            try {
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @NotNull
+    private final ByteBuffer buffer;
+    private final int blob;
+    @Nullable
+    private final String @NotNull[] decoded;
+    @NotNull
+    private final Table forward;
+    private final int offsets;
+    @NotNull
+    private final Table reversed;
+
+    private StarplaneMappingIndex(@NotNull ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.getInt(0) != StarplaneMappingIndex.MAGIC) {
+            throw new IOException("Not a mapping index file (bad magic)");
+        }
+        if (buffer.getInt(4) != StarplaneMappingIndex.VERSION) {
+            throw new IOException("Unsupported mapping index version " + buffer.getInt(4));
+        }
+        int stringCount = buffer.getInt(8);
+        this.decoded = new String[stringCount];
+        this.offsets = 12;
+        int pos = this.offsets + (stringCount + 1) * 4;
+        int blobLength = buffer.getInt(pos);
+        this.blob = pos + 4;
+        pos = this.blob + blobLength;
+
+        int[] tableStarts = new int[4];
+        int[] tableSlots = new int[4];
+        for (int i = 0; i < 4; i++) {
+            int length = buffer.getInt(pos);
+            tableStarts[i] = pos + 4;
+            tableSlots[i] = length / ((i % 2 == 0 ? StarplaneMappingIndex.CLASS_SLOT_SIZE : StarplaneMappingIndex.MEMBER_SLOT_SIZE) / 4);
+            pos = tableStarts[i] + length * 4;
+        }
+        int[] filterStarts = new int[4];
+        int[] filterWords = new int[4];
+        for (int i = 0; i < 4; i++) {
+            filterWords[i] = buffer.getInt(pos);
+            if (Integer.bitCount(filterWords[i]) != 1) {
+                throw new IOException("Mapping index contains a filter of " + filterWords[i] + " words, which is not a power of two");
+            }
+            filterStarts[i] = pos + 4;
+            pos = filterStarts[i] + filterWords[i] * 8;
+        }
+        if (pos != buffer.limit()) {
+            throw new IOException("Mapping index has a length of " + buffer.limit() + " bytes, but " + pos + " bytes were expected");
+        }
+        this.forward = new Table(tableStarts[0], tableSlots[0], filterStarts[0], filterWords[0], tableStarts[1], tableSlots[1], filterStarts[1], filterWords[1]);
+        this.reversed = new Table(tableStarts[2], tableSlots[2], filterStarts[2], filterWords[2], tableStarts[3], tableSlots[3], filterStarts[3], filterWords[3]);
+    }
+
+    @NotNull
+    Table getTable(boolean reversed) {
+        return reversed ? this.reversed : this.forward;
+    }
+
+    @NotNull
+    private String string(int index) {
+        String string = this.decoded[index];
+        if (string == null) {
+            int start = this.buffer.getInt(this.offsets + index * 4);
+            int end = this.buffer.getInt(this.offsets + index * 4 + 4);
+            byte[] bytes = new byte[end - start];
+            this.buffer.get(this.blob + start, bytes);
+            // Races are benign, as strings are immutable and equal
+            this.decoded[index] = string = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return string;
+    }
+
+    private boolean stringEquals(int index, @NotNull String string) {
+        String decoded = this.decoded[index];
+        if (decoded != null) {
+            return decoded.equals(string);
+        }
+
+        int start = this.buffer.getInt(this.offsets + index * 4);
+        int end = this.buffer.getInt(this.offsets + index * 4 + 4);
+        int length = string.length();
+        for (int i = 0; i < end - start; i++) {
+            byte b = this.buffer.get(this.blob + start + i);
+            if (b < 0) {
+                // Non-ASCII characters: Fall back to decoding the string
+                return this.string(index).equals(string);
+            } else if (i >= length || b != string.charAt(i)) {
+                return false;
+            }
+        }
+        return end - start == length;
+    }
+}
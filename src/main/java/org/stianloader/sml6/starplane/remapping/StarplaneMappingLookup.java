@@ -1,38 +1,435 @@
 package org.stianloader.sml6.starplane.remapping;
 
-import java.io.BufferedReader;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.BiConsumer;
 
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.stianloader.remapper.MemberRef;
-import org.stianloader.remapper.Remapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.stianloader.remapper.SimpleMappingLookup;
 
-public class StarplaneMappingLookup extends SimpleMappingLookup {
+/**
+ * A lookup that reads the mappings from a tiny v1 or tiny v2 file. The file may be xz-compressed ({@code .xz}) or
+ * be contained in an xz-compressed tarball ({@code .tar.xz}), in which case it is decompressed while being read.
+ * Only the first two namespaces of the file are used.
+ */
+public class StarplaneMappingLookup extends SimpleMappingLookup implements EnumerableMappingLookup {
 
+    @NotNull
+    private static final Logger LOGGER = LoggerFactory.getLogger(StarplaneMappingLookup.class);
+
+    /**
+     * The name of the entry to read if {@link #map} is a tarball, or null to read the only tiny file within the tarball.
+     */
+    @Nullable
+    private final String archiveEntry;
+
+    /**
+     * Copies of all mappings that were added to this lookup, as {@link SimpleMappingLookup} does not
+     * expose the mappings it holds.
+     */
+    @NotNull
+    private final Map<String, String> classMappings = new LinkedHashMap<>();
+    /**
+     * The compiled mappings, if loaded. Mappings that were added to this lookup by other means are stored
+     * in {@link #classMappings} and {@link #memberMappings} and take precedence.
+     */
+    @Nullable
+    private StarplaneMappingIndex.Table index;
     @NotNull
     private final Path map;
+    @NotNull
+    private final Map<MemberRef, String> memberMappings = new LinkedHashMap<>();
 
     private final boolean reverse;
     private final boolean ignoreNonExistentFiles;
 
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r' || b == '\f' || b == 0x0B;
+    }
+
+    @NotNull
+    private static String token(byte @NotNull[] data, int start, int end) {
+        return new String(data, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    private static boolean tokenEquals(byte @NotNull[] data, int start, int end, @NotNull String expected) {
+        if (end - start != expected.length()) {
+            return false;
+        }
+        for (int i = 0; i < expected.length(); i++) {
+            if (data[start + i] != expected.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Compares a token with an upper-case ASCII string, ignoring the case of the token.
+     */
+    private static boolean tokenEqualsIgnoreCase(byte @NotNull[] data, int start, int end, @NotNull String expected) {
+        if (end - start != expected.length()) {
+            return false;
+        }
+        for (int i = 0; i < expected.length(); i++) {
+            int b = data[start + i];
+            if (b >= 'a' && b <= 'z') {
+                b -= 'a' - 'A';
+            }
+            if (b != expected.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parses a tiny v1 or tiny v2 file.
+     *
+     * @param data The contents of the file
+     * @param classes The list to add the class mappings to, every mapping occupying two consecutive elements:
+     * the source name and the destination name
+     * @param members The list to add the field and method mappings to, every mapping occupying four consecutive elements
+     * which are the same as the tiny columns 1 to 4. That is the owner (in the source namespace), the descriptor
+     * (in the source namespace), the name of the member in the source namespace and the name of the member in the
+     * destination namespace.
+     * @return The amount of lines in the file
+     * @throws IOException If the file is malformed
+     */
+    private static int parse(byte @NotNull[] data, @NotNull List<@NotNull String> classes, @NotNull List<@NotNull String> members) throws IOException {
+        if (StarplaneMappingLookup.tokenEquals(data, 0, Math.min(data.length, 7), "tiny\t2\t")) {
+            return StarplaneMappingLookup.parseTinyV2(data, classes, members);
+        }
+
+        // Start (inclusive) and end (exclusive) offsets of the first five tokens of the current line
+        int[] tokenStarts = new int[5];
+        int[] tokenEnds = new int[5];
+
+        int lineNr = 0;
+        for (int lineStart = 0; lineStart < data.length;) {
+            int lineEnd = lineStart;
+            while (lineEnd < data.length && data[lineEnd] != '\n') {
+                lineEnd++;
+            }
+            lineNr++;
+
+            // Tokenize the line, stopping at the start of a comment
+            int tokenCount = 0;
+            for (int i = lineStart; i < lineEnd && data[i] != '#';) {
+                if (StarplaneMappingLookup.isWhitespace(data[i])) {
+                    i++;
+                    continue;
+                }
+                int tokenStart = i;
+                while (i < lineEnd && data[i] != '#' && !StarplaneMappingLookup.isWhitespace(data[i])) {
+                    i++;
+                }
+                if (tokenCount < tokenStarts.length) {
+                    tokenStarts[tokenCount] = tokenStart;
+                    tokenEnds[tokenCount] = i;
+                }
+                tokenCount++;
+            }
+            lineStart = lineEnd + 1;
+
+            if (lineNr == 1) {
+                // the first line must specify the version of tiny and the namespace.
+                // we are going to ignore the namespace as they just produce too much headache
+                // - instead, we assume that the user (usually a developer) knows what they are
+                // doing and give them this free ticket to exploit the system to the degree tolerable.
+                // This is done as in galimulator modding (especially under gsl-starplane) there is
+                // no real concept of namespaces, that is each mapping contributes to a broader
+                // project, with the user being able to specify infinitely more as they please
+                // - as long as they are compatible with each other of course.
+                // So while "vanilla" obfuscated mappings could be attributed to official,
+                // slIntermediary to intermediary and spStarmap to named, this distinction makes
+                // little sense as the intermediary and named channels are technically speaking
+                // incomplete.
+                if (tokenCount == 0) {
+                    throw new IOException("No tiny header present (empty file?).");
+                }
+                if (tokenCount != 3) {
+                    throw new IOException("The tiny header had " + tokenCount + " tokens, however it is expected to be exactly 3.");
+                }
+                if (!StarplaneMappingLookup.tokenEquals(data, tokenStarts[0], tokenEnds[0], "v1")) {
+                    throw new IOException("This method can only read tiny v1 and tiny v2 maps.");
+                }
+                continue;
+            } else if (tokenCount == 0) {
+                continue;
+            }
+
+            if (StarplaneMappingLookup.tokenEqualsIgnoreCase(data, tokenStarts[0], tokenEnds[0], "CLASS")) {
+                // Format: CLASS originalName newName
+                if (tokenCount != 3) {
+                    throw new IOException("Line " + lineNr + " is of type CLASS, but " + tokenCount + " colums are present, even though it expects 3.");
+                }
+                String srcName = StarplaneMappingLookup.token(data, tokenStarts[1], tokenEnds[1]);
+                String dstName = StarplaneMappingLookup.token(data, tokenStarts[2], tokenEnds[2]);
+                classes.add(srcName);
+                classes.add(dstName);
+            } else if (StarplaneMappingLookup.tokenEqualsIgnoreCase(data, tokenStarts[0], tokenEnds[0], "METHOD")
+                    || StarplaneMappingLookup.tokenEqualsIgnoreCase(data, tokenStarts[0], tokenEnds[0], "FIELD")) {
+                // The official tinyV1 mappings format that actually makes sense
+                // Format: METHOD owner descriptor originalName newName
+                //                11111 2222222222 333333333333 4444444
+                // Format: FIELD owner descriptor originalName newName
+                //               11111 2222222222 333333333333 4444444
+                if (tokenCount != 5) {
+                    String type = StarplaneMappingLookup.token(data, tokenStarts[0], tokenEnds[0]);
+                    throw new IOException("Line " + lineNr + " is of type " + type + ", but " + tokenCount + " colums are present, even though it expects 5.");
+                }
+                for (int i = 1; i < 5; i++) {
+                    members.add(StarplaneMappingLookup.token(data, tokenStarts[i], tokenEnds[i]));
+                }
+            }
+        }
+
+        if (lineNr == 0) {
+            throw new IOException("No tiny header present (empty file?).");
+        }
+        return lineNr;
+    }
+
+    /**
+     * Parses a tiny v2 file, reporting the mappings in the same way as {@link #parse(byte[], List, List)}.
+     * Only the first two namespaces are read, while parameters, local variables and comments are skipped.
+     *
+     * @param data The contents of the file
+     * @param classes The list to add the class mappings to
+     * @param members The list to add the field and method mappings to
+     * @return The amount of lines in the file
+     * @throws IOException If the file is malformed
+     */
+    private static int parseTinyV2(byte @NotNull[] data, @NotNull List<@NotNull String> classes, @NotNull List<@NotNull String> members) throws IOException {
+        // Start (inclusive) and end (exclusive) offsets of the first four columns of the current line
+        int[] columnStarts = new int[4];
+        int[] columnEnds = new int[4];
+
+        boolean escapedNames = false;
+        boolean inHeader = true;
+        String currentClass = null;
+        int lineNr = 0;
+        for (int lineStart = 0; lineStart < data.length;) {
+            int lineEnd = lineStart;
+            while (lineEnd < data.length && data[lineEnd] != '\n') {
+                lineEnd++;
+            }
+            int contentEnd = lineEnd;
+            if (contentEnd > lineStart && data[contentEnd - 1] == '\r') {
+                contentEnd--;
+            }
+            lineNr++;
+
+            // Unlike tiny v1, the columns are separated by exactly one tab, while the leading tabs denote the nesting depth
+            int indent = 0;
+            while (lineStart + indent < contentEnd && data[lineStart + indent] == '\t') {
+                indent++;
+            }
+            int columnCount = 0;
+            if (lineStart + indent != contentEnd) {
+                int columnStart = lineStart + indent;
+                for (int i = columnStart; i <= contentEnd; i++) {
+                    if (i == contentEnd || data[i] == '\t') {
+                        if (columnCount < columnStarts.length) {
+                            columnStarts[columnCount] = columnStart;
+                            columnEnds[columnCount] = i;
+                        }
+                        columnCount++;
+                        columnStart = i + 1;
+                    }
+                }
+            }
+            lineStart = lineEnd + 1;
+
+            if (lineNr == 1) {
+                // Format: tiny 2 minorVersion namespaceA namespaceB [namespaceC...]
+                if (columnCount < 5) {
+                    throw new IOException("The tiny v2 header declares " + Math.max(0, columnCount - 3) + " namespaces, however at least 2 are required.");
+                }
+                continue;
+            } else if (columnCount == 0) {
+                continue;
+            }
+
+            if (indent == 0) {
+                inHeader = false;
+                if (!StarplaneMappingLookup.tokenEquals(data, columnStarts[0], columnEnds[0], "c")) {
+                    // Unknown section, skip it including all of its children
+                    currentClass = null;
+                    continue;
+                }
+                // Format: c srcName dstName [...]
+                if (columnCount < 2) {
+                    throw new IOException("Line " + lineNr + " is of type c, but " + columnCount + " columns are present, even though it expects at least 2.");
+                }
+                currentClass = StarplaneMappingLookup.column(data, columnStarts[1], columnEnds[1], escapedNames);
+                if (columnCount > 2 && columnEnds[2] != columnStarts[2]) {
+                    classes.add(currentClass);
+                    classes.add(StarplaneMappingLookup.column(data, columnStarts[2], columnEnds[2], escapedNames));
+                }
+            } else if (indent == 1 && inHeader) {
+                // Header properties
+                if (StarplaneMappingLookup.tokenEquals(data, columnStarts[0], columnEnds[0], "escaped-names")) {
+                    escapedNames = true;
+                }
+            } else if (indent == 1 && currentClass != null
+                    && (StarplaneMappingLookup.tokenEquals(data, columnStarts[0], columnEnds[0], "f")
+                            || StarplaneMappingLookup.tokenEquals(data, columnStarts[0], columnEnds[0], "m"))) {
+                // Format: f/m descriptor srcName dstName [...]
+                if (columnCount < 3) {
+                    String type = StarplaneMappingLookup.token(data, columnStarts[0], columnEnds[0]);
+                    throw new IOException("Line " + lineNr + " is of type " + type + ", but " + columnCount + " columns are present, even though it expects at least 3.");
+                }
+                if (columnCount > 3 && columnEnds[3] != columnStarts[3]) {
+                    members.add(currentClass);
+                    for (int i = 1; i < 4; i++) {
+                        members.add(StarplaneMappingLookup.column(data, columnStarts[i], columnEnds[i], escapedNames));
+                    }
+                }
+            }
+            // Class comments as well as parameters, local variables and their comments are of no interest
+        }
+
+        if (lineNr == 0) {
+            throw new IOException("No tiny header present (empty file?).");
+        }
+        return lineNr;
+    }
+
+    @NotNull
+    private static String column(byte @NotNull[] data, int start, int end, boolean escaped) throws IOException {
+        String value = StarplaneMappingLookup.token(data, start, end);
+        if (!escaped || value.indexOf('\\') == -1) {
+            return value;
+        }
+
+        StringBuilder builder = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c != '\\') {
+                builder.append(c);
+                continue;
+            }
+            if (++i == value.length()) {
+                throw new IOException("Dangling escape character in '" + value + "'.");
+            }
+            switch (value.charAt(i)) {
+            case '\\':
+                builder.append('\\');
+                break;
+            case 'n':
+                builder.append('\n');
+                break;
+            case 'r':
+                builder.append('\r');
+                break;
+            case 't':
+                builder.append('\t');
+                break;
+            case '0':
+                builder.append('\0');
+                break;
+            default:
+                throw new IOException("Unknown escape sequence '\\" + value.charAt(i) + "' in '" + value + "'.");
+            }
+        }
+        return builder.toString();
+    }
+
+    @NotNull
+    private static String sha256(byte @NotNull[] data, @Nullable String archiveEntry) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported by this JVM", e);
+        }
+        digest.update(data);
+        if (archiveEntry != null) {
+            digest.update((byte) 0);
+            digest.update(archiveEntry.getBytes(StandardCharsets.UTF_8));
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(Character.forDigit((b >> 4) & 0x0F, 16));
+            hex.append(Character.forDigit(b & 0x0F, 16));
+        }
+        return hex.toString();
+    }
+
     public StarplaneMappingLookup(@NotNull Path map, boolean reversed) {
         this(map, reversed, false);
     }
 
     public StarplaneMappingLookup(@NotNull Path map, boolean reversed, boolean ignoreNonExistentFiles) {
+        this(map, null, reversed, ignoreNonExistentFiles);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param map The mappings file to read. May be xz-compressed or an xz-compressed tarball
+     * @param archiveEntry The name of the tarball entry to read, or null to read the only {@code .tiny} file
+     * within the tarball. Ignored if the mappings file is not a tarball
+     * @param reversed Whether to map from the second namespace to the first namespace instead
+     * @param ignoreNonExistentFiles Whether to silently load no mappings if the mappings file does not exist
+     */
+    public StarplaneMappingLookup(@NotNull Path map, @Nullable String archiveEntry, boolean reversed, boolean ignoreNonExistentFiles) {
         this.map = map;
+        this.archiveEntry = archiveEntry;
         this.reverse = reversed;
         this.ignoreNonExistentFiles = ignoreNonExistentFiles;
     }
 
+    /**
+     * Constructor for {@link #getReversedView()}.
+     *
+     * @param lookup The lookup to reverse
+     */
+    private StarplaneMappingLookup(@NotNull StarplaneMappingLookup lookup) {
+        this.map = lookup.map;
+        this.archiveEntry = lookup.archiveEntry;
+        this.reverse = !lookup.reverse;
+        this.ignoreNonExistentFiles = lookup.ignoreNonExistentFiles;
+        StarplaneMappingIndex.Table index = lookup.index;
+        this.index = index == null ? null : index.getInverse();
+    }
+
+    /**
+     * Obtains a lookup which maps in the opposite direction of this lookup. The returned lookup shares the string pool
+     * and the tables of this lookup, which means that the mappings file is not read again and that next to no
+     * additional memory is used.
+     *
+     * <p>This lookup must be loaded through {@link #load()} or {@link #loadIndexed(Path)} beforehand.
+     * Mappings that were added through {@link #remapClass(String, String)} or {@link #remapMember(MemberRef, String)}
+     * are not part of the returned lookup.
+     *
+     * @return The reversed lookup
+     */
+    @NotNull
+    @Contract(pure = true, value = "-> new")
+    public StarplaneMappingLookup getReversedView() {
+        return new StarplaneMappingLookup(this);
+    }
+
     @NotNull
     @Contract(mutates = "this", pure = false, value = "-> this")
     public StarplaneMappingLookup load() throws IOException {
@@ -40,114 +437,166 @@ public class StarplaneMappingLookup extends SimpleMappingLookup {
             return this;
         }
 
-        // For reversed mappings to take effect correctly, we need to "delay" the application of member mappings
-        // until all classes were mapped - as this could have an effect on owner name and the member descriptor
-        // of the target namespace (which acts as the source namespace in reversed mappings - it's confusing, I know).
-        // The contents of the string array are the same as the tiny columns. That is index 1 for owner (in the source namespace),
-        // index 2 for descriptor (in the source namespace), index 3 the name of the member in the source namespace
-        // and index 4 the name of the member in the destination namespace.
-        // Of course there is still index 0 but that one can be disregarded as it will be FIELD or METHOD.
-        // The SimpleMappingLookup is required to lookup the non-reversed class names in order to be able
-        // to swap the namespaces of the owner and descriptors. Note that this lookup instance
-        // will not be filled in if there is no reversal to be done (this.reverse == false).
-        SimpleMappingLookup classLookup = new SimpleMappingLookup();
-        List<@NotNull String[]> delayedMemberMappings = new ArrayList<>();
+        // The mappings are compiled to an index held in memory, which holds both orientations over a single string pool.
+        // This way, the swapping of owners and descriptors required by the reversed orientation happens only once
+        // and a view of the opposite orientation can be obtained via #getReversedView without reading the file again.
+        long startTime = System.nanoTime();
+        List<@NotNull String> classes = new ArrayList<>();
+        List<@NotNull String> members = new ArrayList<>();
+        byte[] data;
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(this.map))) {
+            data = MappingArchives.read(this.map, in, this.archiveEntry);
+        }
+        int lineNr = StarplaneMappingLookup.parse(data, classes, members);
+        this.index = StarplaneMappingIndex.of(StarplaneMappingIndex.compile(classes, members)).getTable(this.reverse);
 
-        int lineNr = 0;
-        try (BufferedReader br = Files.newBufferedReader(this.map, StandardCharsets.UTF_8)) {
-            // the first line must specify the version of tiny and the namespace.
-            // we are going to ignore the namespace as they just produce too much headache
-            // - instead, we assume that the user (usually a developer) knows what they are
-            // doing and give them this free ticket to exploit the system to the degree tolerable.
-            // This is done as in galimulator modding (especially under gsl-starplane) there is
-            // no real concept of namespaces, that is each mapping contributes to a broader
-            // project, with the user being able to specify infinitely more as they please
-            // - as long as they are compatible with each other of course.
-            // So while "vanilla" obfuscated mappings could be attributed to official,
-            // slIntermediary to intermediary and spStarmap to named, this distinction makes
-            // little sense as the intermediary and named channels are technically speaking
-            // incomplete.
-            String header = br.readLine();
-            lineNr++;
-            if (header == null || header.isBlank()) {
-                br.close();
-                throw new IOException("No tiny header present (empty file?).");
-            }
-            String[] headerTokens = header.split("\\s+");
-            if (headerTokens.length != 3) {
-                br.close();
-                throw new IOException("The tiny header had " + headerTokens.length + " tokens, however it is expected to be exactly 3.");
-            }
-            if (!headerTokens[0].equals("v1")) {
-                br.close();
-                throw new IOException("This method can only read tiny v1 maps.");
-            }
-            for (String line = br.readLine(); line != null; line = br.readLine()) {
-                lineNr++;
-                if (line.charAt(0) == '#') { // fast short-circuiting
-                    continue;
-                }
-                line = line.split("#", 2)[0];
-                if (line == null || line.isBlank()) {
-                    continue;
-                }
-                @NotNull String[] colums = line.split("\\s+");
-                String type = colums[0].toUpperCase(Locale.ROOT);
-                if (type.equals("CLASS")) {
-                    // Format: CLASS originalName newName
-                    if (colums.length != 3) {
-                        throw new IOException("Line " + lineNr + " is of type CLASS, but only " + colums.length + " colums are present, even though it expects 3.");
-                    }
-                    if (this.reverse) {
-                        super.remapClass(colums[2], colums[1]);
-                        classLookup.remapClass(colums[1], colums[2]);
-                    } else {
-                        super.remapClass(colums[1], colums[2]);
-                    }
-                } else if (type.equals("METHOD")) {
-                    if (colums.length != 5) {
-                        throw new IOException("Line " + lineNr + " is of type CLASS, but only " + colums.length + " colums are present, even though it expects 5.");
-                    }
-                    // The official tinyV1 mappings format that actually makes sense
-                    // Format: METHOD owner descriptor originalName newName
-                    //                11111 2222222222 333333333333 4444444
-                    delayedMemberMappings.add(colums);
-                } else if (type.equals("FIELD")) {
-                    // Format: FIELD owner descriptor originalName newName
-                    //               11111 2222222222 333333333333 4444444
-                    if (colums.length != 5) {
-                        throw new IOException("Line " + lineNr + " is of type CLASS, but only " + colums.length + " colums are present, even though it expects 5.");
-                    }
-                    delayedMemberMappings.add(colums);
-                }
+        if (StarplaneMappingLookup.LOGGER.isDebugEnabled()) {
+            long elapsed = Math.max(1L, System.nanoTime() - startTime);
+            StarplaneMappingLookup.LOGGER.debug("Parsed {} lines of {} in {} ms ({} lines/s).", lineNr, this.map.getFileName(), elapsed / 1_000_000L, lineNr * 1_000_000_000L / elapsed);
+        }
+        return this;
+    }
+
+    /**
+     * Loads the mappings through a precompiled binary index instead of parsing the mappings file.
+     * The index is compiled from the mappings file the first time the file is loaded and stored within the given
+     * directory under the hash of the file contents, so that changes to the file cause the index to be recompiled.
+     * Compressed mappings files are only decompressed when the index is compiled.
+     * Later loads memory-map the index, which is much faster than parsing the mappings file again.
+     * A single index serves both the forward and the reversed orientation.
+     *
+     * @param indexDirectory The directory to store compiled indices in
+     * @return The current instance
+     * @throws IOException If the mappings file is malformed or the mappings file or the index could not be read or written
+     */
+    @NotNull
+    @Contract(mutates = "this", pure = false, value = "_ -> this")
+    public StarplaneMappingLookup loadIndexed(@NotNull Path indexDirectory) throws IOException {
+        if (this.ignoreNonExistentFiles && Files.notExists(this.map)) {
+            return this;
+        }
+
+        long startTime = System.nanoTime();
+        byte[] raw = Files.readAllBytes(this.map);
+        Path indexFile = indexDirectory.resolve(StarplaneMappingLookup.sha256(raw, this.archiveEntry) + ".spidx");
+        StarplaneMappingIndex index = null;
+        if (Files.exists(indexFile)) {
+            try {
+                index = StarplaneMappingIndex.open(indexFile);
+            } catch (IOException e) {
+                StarplaneMappingLookup.LOGGER.warn("Unable to read mapping index {}, it will be recompiled.", indexFile, e);
             }
         }
 
-        StringBuilder descBuilder = new StringBuilder();
+        boolean compiled = index == null;
+        if (index == null) {
+            List<@NotNull String> classes = new ArrayList<>();
+            List<@NotNull String> members = new ArrayList<>();
+            StarplaneMappingLookup.parse(MappingArchives.read(this.map, new ByteArrayInputStream(raw), this.archiveEntry), classes, members);
+            StarplaneMappingIndex.write(indexFile, StarplaneMappingIndex.compile(classes, members));
+            index = StarplaneMappingIndex.open(indexFile);
+        }
+
+        this.index = index.getTable(this.reverse);
+        StarplaneMappingLookup.LOGGER.debug("{} mapping index of {} in {} ms.", compiled ? "Compiled" : "Mapped", this.map.getFileName(), (System.nanoTime() - startTime) / 1_000_000L);
+        return this;
+    }
 
-        for (@NotNull String[] columns : delayedMemberMappings) {
-            String srcOwner = columns[1];
-            String srcDesc = columns[2];
-            String srcName = columns[3];
-            String dstName = columns[4];
+    @Override
+    public void forEachClassMapping(@NotNull BiConsumer<@NotNull String, @NotNull String> consumer) {
+        StarplaneMappingIndex.Table index = this.index;
+        if (index != null) {
+            index.forEachClassMapping((srcName, dstName) -> {
+                if (!this.classMappings.containsKey(srcName)) {
+                    consumer.accept(srcName, dstName);
+                }
+            });
+        }
+        this.classMappings.forEach(consumer);
+    }
 
-            if (this.reverse) {
-                boolean field = srcDesc.codePointAt(0) != '(';
-                // Swap source and destination namespace descriptors and classes
-                srcOwner = classLookup.getRemappedClassName(srcOwner);
-                if (field) {
-                    srcDesc = Remapper.getRemappedFieldDescriptor(classLookup, srcDesc, descBuilder);
-                } else {
-                    srcDesc = Remapper.getRemappedMethodDescriptor(classLookup, srcDesc, descBuilder);
+    @Override
+    public void forEachMemberMapping(@NotNull BiConsumer<@NotNull MemberRef, @NotNull String> consumer) {
+        StarplaneMappingIndex.Table index = this.index;
+        if (index != null) {
+            index.forEachMemberMapping((srcRef, dstName) -> {
+                if (!this.memberMappings.containsKey(srcRef)) {
+                    consumer.accept(srcRef, dstName);
                 }
-                // Swap source and destination namespace names
-                String swapStore = srcName;
-                srcName = dstName;
-                dstName = swapStore;
+            });
+        }
+        this.memberMappings.forEach(consumer);
+    }
+
+    @Override
+    @NotNull
+    public String getRemappedClassName(@NotNull String srcName) {
+        if (this.index == null) {
+            return super.getRemappedClassName(srcName);
+        }
+        String dstName = this.getRemappedClassNameFast(srcName);
+        return dstName == null ? srcName : dstName;
+    }
+
+    @Override
+    @Nullable
+    public String getRemappedClassNameFast(@NotNull String srcName) {
+        StarplaneMappingIndex.Table index = this.index;
+        if (index == null) {
+            return super.getRemappedClassNameFast(srcName);
+        }
+        if (!this.classMappings.isEmpty()) {
+            String dstName = this.classMappings.get(srcName);
+            if (dstName != null) {
+                return dstName;
+            }
+        }
+        return index.getClassName(srcName);
+    }
+
+    @Override
+    @NotNull
+    public String getRemappedFieldName(@NotNull String srcOwner, @NotNull String srcName, @NotNull String srcDesc) {
+        if (this.index == null) {
+            return super.getRemappedFieldName(srcOwner, srcName, srcDesc);
+        }
+        return this.getRemappedMemberName(srcOwner, srcName, srcDesc);
+    }
+
+    @NotNull
+    private String getRemappedMemberName(@NotNull String srcOwner, @NotNull String srcName, @NotNull String srcDesc) {
+        if (!this.memberMappings.isEmpty()) {
+            String dstName = this.memberMappings.get(new MemberRef(srcOwner, srcName, srcDesc));
+            if (dstName != null) {
+                return dstName;
             }
+        }
+        String dstName = Objects.requireNonNull(this.index).getMemberName(srcOwner, srcName, srcDesc);
+        return dstName == null ? srcName : dstName;
+    }
 
-            super.remapMember(new MemberRef(srcOwner, srcName, srcDesc), dstName);
+    @Override
+    @NotNull
+    public String getRemappedMethodName(@NotNull String srcOwner, @NotNull String srcName, @NotNull String srcDesc) {
+        if (this.index == null) {
+            return super.getRemappedMethodName(srcOwner, srcName, srcDesc);
         }
+        return this.getRemappedMemberName(srcOwner, srcName, srcDesc);
+    }
+
+    @Override
+    @NotNull
+    public StarplaneMappingLookup remapClass(@NotNull String srcName, @NotNull String dstName) {
+        super.remapClass(srcName, dstName);
+        this.classMappings.put(srcName, dstName);
+        return this;
+    }
+
+    @Override
+    @NotNull
+    public StarplaneMappingLookup remapMember(@NotNull MemberRef srcRef, @NotNull String dstName) {
+        super.remapMember(srcRef, dstName);
+        this.memberMappings.put(srcRef, dstName);
         return this;
     }
 
@@ -0,0 +1,119 @@
+package org.stianloader.sml6.starplane.remapping;
+
+import java.util.Arrays;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A table of interned strings, where every distinct string is assigned an integer id in the order the strings
+ * were added to the table. The ids are dense, that is the first string is assigned the id 0, the second
+ * string the id 1 and so on.
+ *
+ * <p>A single table can be shared by several lookups, in which case every distinct class name, member name and
+ * descriptor is only held once and the lookups can key their mappings by primitive ids instead of strings.
+ *
+ * <p>Strings may only be added while no other thread accesses the table. Afterwards, the table can be queried
+ * from multiple threads at once.
+ */
+public final class SymbolTable {
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private int size;
+    /**
+     * The ids of the strings plus one, stored in an open-addressing hash table. 0 marks an empty slot.
+     */
+    private int @NotNull[] slots = new int[16];
+    @NotNull
+    private String @NotNull[] symbols = new String[8];
+
+    /**
+     * Obtains the id of a string without adding it to the table.
+     *
+     * @param symbol The string to look up
+     * @return The id of the string, or -1 if the string is not part of the table
+     */
+    public int find(@NotNull String symbol) {
+        int[] slots = this.slots;
+        int mask = slots.length - 1;
+        for (int slot = SymbolTable.spread(symbol.hashCode()) & mask;; slot = (slot + 1) & mask) {
+            int id = slots[slot] - 1;
+            if (id < 0) {
+                return -1;
+            } else if (this.symbols[id].equals(symbol)) {
+                return id;
+            }
+        }
+    }
+
+    /**
+     * Obtains the string with the given id.
+     *
+     * @param id The id of the string
+     * @return The string
+     * @throws IndexOutOfBoundsException If no string has the given id
+     */
+    @NotNull
+    public String get(int id) {
+        if (id < 0 || id >= this.size) {
+            throw new IndexOutOfBoundsException("Symbol id " + id + " out of bounds for length " + this.size);
+        }
+        return this.symbols[id];
+    }
+
+    private void insert(int @NotNull[] slots, int id) {
+        int mask = slots.length - 1;
+        int slot = SymbolTable.spread(this.symbols[id].hashCode()) & mask;
+        while (slots[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = id + 1;
+    }
+
+    /**
+     * Obtains the id of a string, adding the string to the table if it is not yet part of it.
+     *
+     * @param symbol The string to intern
+     * @return The id of the string
+     */
+    public int intern(@NotNull String symbol) {
+        int id = this.find(symbol);
+        if (id >= 0) {
+            return id;
+        }
+
+        if (this.size == this.symbols.length) {
+            this.symbols = Arrays.copyOf(this.symbols, this.size * 2);
+        }
+        id = this.size++;
+        this.symbols[id] = symbol;
+
+        if (this.size * 2 > this.slots.length) {
+            // Keep the load factor at or below 0.5
+            int[] slots = new int[this.slots.length * 2];
+            for (int i = 0; i < this.size; i++) {
+                this.insert(slots, i);
+            }
+            this.slots = slots;
+        } else {
+            this.insert(this.slots, id);
+        }
+        return id;
+    }
+
+    /**
+     * Obtains the amount of strings within the table.
+     *
+     * @return The amount of strings
+     */
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public String toString() {
+        return "Symbol Table [size=" + this.size + "]";
+    }
+}
@@ -1,16 +1,20 @@
 package org.stianloader.sml6.tasks;
 
+import java.io.File;
 import java.io.IOException;
-import java.io.OutputStream;
 import java.io.UncheckedIOException;
 import java.io.Writer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 import java.util.jar.JarFile;
 
 import javax.inject.Inject;
@@ -19,6 +23,7 @@ import org.gradle.api.file.DirectoryProperty;
 import org.gradle.api.file.ProjectLayout;
 import org.gradle.api.file.RegularFileProperty;
 import org.gradle.api.internal.ConventionTask;
+import org.gradle.api.provider.ListProperty;
 import org.gradle.api.provider.Property;
 import org.gradle.api.provider.Provider;
 import org.gradle.api.provider.ProviderFactory;
@@ -35,6 +40,10 @@ import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.tree.ClassNode;
 import org.objectweb.asm.tree.InnerClassNode;
 import org.objectweb.asm.tree.MethodNode;
+import org.stianloader.sml6.starplane.DeobfuscationStageCache;
+import org.stianloader.sml6.starplane.OaktreeStageExecutor;
+import org.stianloader.sml6.starplane.ParallelJarWriter;
+import org.stianloader.sml6.starplane.TieredClassIndex;
 import org.stianloader.sml6.starplane.autodeobf.Autodeobf502;
 import org.stianloader.sml6.starplane.autodeobf.AutodeobfRunner;
 
@@ -52,6 +61,12 @@ public abstract class DeobfuscateGameTask extends ConventionTask {
         this.getWithAutodeobf().convention(true);
         this.getWithSLDeobf().convention(true);
         this.getWithSLDeobfRemapping().convention(this.getWithSLDeobf());
+        this.getDeobfuscationThreads().convention(Runtime.getRuntime().availableProcessors());
+        this.getPassthroughResources().convention(true);
+        this.getLibraryPackages().convention(Collections.emptyList());
+        this.getUseStageCache().convention(true);
+        File stageCacheDir = new File(this.getProject().getGradle().getGradleUserHomeDir(), "caches/sml6/deobf-stages");
+        this.getStageCacheDirectory().convention(this.getLayout().dir(this.getProviders().provider(() -> stageCacheDir)));
         DirectoryProperty buildDir = this.getLayout().getBuildDirectory();
         Provider<String> taskNameProvider = this.getProviders().provider(this::getName);
         this.getOutputDirectory().convention(buildDir.dir(taskNameProvider.map(s -> "sml6-" + s)));
@@ -92,6 +107,12 @@ public abstract class DeobfuscateGameTask extends ConventionTask {
 
         Path intermediaryMappingsFile = this.getSlIntermediaryMappings().getAsFile().get().toPath();
         Oaktree deobfuscator = new Oaktree();
+        List<String> libraryPackages = new ArrayList<>();
+        for (String libraryPackage : this.getLibraryPackages().get()) {
+            libraryPackage = libraryPackage.replace('.', '/');
+            libraryPackages.add(libraryPackage.endsWith("/") ? libraryPackage : libraryPackage + '/');
+        }
+        TieredClassIndex tieredIndex = null;
         oaktreeDeobf:
         try {
             if (!this.getWithSLDeobf().get() && !this.getWithAutodeobf().get()) {
@@ -101,57 +122,115 @@ public abstract class DeobfuscateGameTask extends ConventionTask {
                 break oaktreeDeobf;
             }
 
-            long indexing = System.nanoTime();
-            JarFile jar = new JarFile(cleanGalimJar.toFile());
-            deobfuscator.index(jar);
-            jar.close();
-            Map<String, ClassNode> nameToNode = new HashMap<>();
-            for (ClassNode node : deobfuscator.getClassNodesDirectly()) {
-                nameToNode.put(node.name, node);
+            DeobfuscationStageCache stageCache = null;
+            String stageCacheKey = null;
+            boolean restoredFromCache = false;
+            if (this.getWithSLDeobf().get() && this.getUseStageCache().get()) {
+                stageCache = new DeobfuscationStageCache(this.getStageCacheDirectory().get().getAsFile().toPath());
+                String stageConfiguration = "withSLDeobfRemapping=" + this.getWithSLDeobfRemapping().get()
+                        + ";oldnames=" + Boolean.getBoolean("de.geolykt.starplane.oldnames")
+                        + ";libraryPackages=" + libraryPackages;
+                stageCacheKey = DeobfuscationStageCache.computeKey(cleanGalimJar, stageConfiguration);
+                try {
+                    restoredFromCache = stageCache.restore(stageCacheKey, deobfuscator.getClassNodesDirectly(), intermediaryMappingsFile);
+                    if (restoredFromCache) {
+                        // Unlike Oaktree#index, restoring the nodes does not populate the name caches of the deobfuscator
+                        deobfuscator.invalidateNameCaches();
+                        if (!libraryPackages.isEmpty()) {
+                            tieredIndex = TieredClassIndex.fromNodes(deobfuscator.getClassNodesDirectly(), libraryPackages);
+                        }
+                        this.getLogger().info("Task '{}' restored the sldeobf stages from the stage cache (key {}).", this.getPath(), stageCacheKey);
+                    }
+                } catch (IOException e) {
+                    this.getLogger().warn("Task '{}' is unable to restore stage cache entry {}. The entry will be recomputed.", this.getPath(), stageCacheKey, e);
+                    deobfuscator.getClassNodesDirectly().clear();
+                }
             }
-            long startDeobf = System.nanoTime();
-            this.getLogger().debug("Loaded input jar in " + (startDeobf - indexing) / 1_000_000L + " ms.");
-            if (!this.getWithSLDeobf().get()) {
+
+            if (!restoredFromCache) {
+                long indexing = System.nanoTime();
+                if (libraryPackages.isEmpty()) {
+                    JarFile jar = new JarFile(cleanGalimJar.toFile());
+                    deobfuscator.index(jar);
+                    jar.close();
+                } else {
+                    tieredIndex = TieredClassIndex.load(cleanGalimJar, libraryPackages, deobfuscator.getClassNodesDirectly());
+                    // Unlike Oaktree#index, loading the nodes does not populate the name caches of the deobfuscator
+                    deobfuscator.invalidateNameCaches();
+                    this.getLogger().info("Task '{}' loaded {} library classes without method bodies.", this.getPath(), tieredIndex.getHierarchyOnlyCount());
+                }
+                Map<String, ClassNode> nameToNode = new HashMap<>();
+                for (ClassNode node : deobfuscator.getClassNodesDirectly()) {
+                    nameToNode.put(node.name, node);
+                }
+                long startDeobf = System.nanoTime();
+                this.getLogger().debug("Loaded input jar in " + (startDeobf - indexing) / 1_000_000L + " ms.");
+                if (!this.getWithSLDeobf().get()) {
+                    if (this.getWithSLDeobfRemapping().get()) {
+                        this.getLogger().warn("Task '{}' has 'withSLDeobf' set to false, while 'withSLDeobfRemapping' is true. The latter will be skipped.");
+                    }
+                    break oaktreeDeobf;
+                }
+                try (OaktreeStageExecutor stages = new OaktreeStageExecutor(deobfuscator, this.getDeobfuscationThreads().get(), this.getLogger())) {
+                    // The class-locality of the stages below is a property of the sl-deobf implementation and has not yet been
+                    // verified on a real game jar, so it is verified on every run unless -Dde.geolykt.starplane.verifyclasslocal=false is set
+                    stages.setVerifyClassLocalStages(!"false".equals(System.getProperty("de.geolykt.starplane.verifyclasslocal")));
+                    stages.runSequential("fixInnerClasses", Oaktree::fixInnerClasses);
+                    // Class-local: only rewrites the local variable tables of each method based on the descriptor of the method
+                    stages.runClassLocal("fixParameterLVT", Oaktree::fixParameterLVT);
+                    stages.runSequential("guessFieldGenerics", Oaktree::guessFieldGenerics);
+                    stages.runSequential("analyseLikelyMethodReturnCollectionGenerics", (tree) -> {
+                        this.addSignatures(tree.getClassNodesDirectly(), nameToNode, tree.analyseLikelyMethodReturnCollectionGenerics());
+                    });
+                    stages.runSequential("lambdaStreamGenericSignatureGuessing", (tree) -> {
+                        Map<MethodReference, ClassWrapper> methods = new HashMap<>();
+                        tree.lambdaStreamGenericSignatureGuessing(null, methods);
+                        this.addSignatures(tree.getClassNodesDirectly(), nameToNode, methods);
+                    });
+                    stages.runSequential("inferMethodGenerics", Oaktree::inferMethodGenerics);
+                    stages.runSequential("inferConstructorGenerics", Oaktree::inferConstructorGenerics);
+                    // Class-local: matches the instructions of a single method body and renames the local variables of that method
+                    stages.runClassLocal("fixForeachOnArray", Oaktree::fixForeachOnArray);
+                    // Class-local: only derives the generic signature of a comparator class from the compare method of the same class
+                    stages.runClassLocal("fixComparators", (tree) -> tree.fixComparators(false));
+                    stages.runSequential("guessAnonymousInnerClasses", Oaktree::guessAnonymousInnerClasses);
+                }
+
+                // sl-deobf adds ACC_SUPER as that was the observed behaviour of compilers when compiling anonymous inner classes.
+                // However, asm-util's ClassCheckAdapter does not tolerate that flag on anonymous inner classes, so we shall strip it.
+                // In the end, this should have absolutely no impact on runtime 90% of the time (the other 10% are when the
+                // ClassCheckAdapter is being used by SLL in case a class failed to transform).
+                for (ClassNode node : deobfuscator.getClassNodesDirectly()) {
+                    for (InnerClassNode icn : node.innerClasses) {
+                        icn.access &= ~Opcodes.ACC_SUPER;
+                    }
+                }
+
+                long startIntermediarisation = System.nanoTime();
+                this.getLogger().debug("Deobfuscated classes in " + (startIntermediarisation - startDeobf) / 1_000_000L + " ms.");
+
                 if (this.getWithSLDeobfRemapping().get()) {
-                    this.getLogger().warn("Task '{}' has 'withSLDeobf' set to false, while 'withSLDeobfRemapping' is true. The latter will be skipped.");
+                    IntermediaryGenerator generator = new IntermediaryGenerator(intermediaryMappingsFile, null, deobfuscator.getClassNodesDirectly());
+                    generator.useAlternateClassNaming(!Boolean.getBoolean("de.geolykt.starplane.oldnames"));
+                    generator.remapClassesV2(true);
+                    deobfuscator.fixSwitchMaps();
+                    generator.doProposeEnumFieldsV2();
+                    generator.remapGetters();
+                    generator.deobfuscate();
+                    this.getLogger().info("Task '{}' computed sldeobf intermediaries in {} ms.", this.getPath(), (System.nanoTime() - startIntermediarisation) / 1_000_000L);
                 }
-                break oaktreeDeobf;
-            }
-            deobfuscator.fixInnerClasses();
-            deobfuscator.fixParameterLVT();
-            deobfuscator.guessFieldGenerics();
-            this.addSignatures(deobfuscator.getClassNodesDirectly(), nameToNode, deobfuscator.analyseLikelyMethodReturnCollectionGenerics());
-            Map<MethodReference, ClassWrapper> methods = new HashMap<>();
-            deobfuscator.lambdaStreamGenericSignatureGuessing(null, methods);
-            this.addSignatures(deobfuscator.getClassNodesDirectly(), nameToNode, methods);
-            deobfuscator.inferMethodGenerics();
-            deobfuscator.inferConstructorGenerics();
-            deobfuscator.fixForeachOnArray();
-            deobfuscator.fixComparators(false);
-            deobfuscator.guessAnonymousInnerClasses();
-
-            // sl-deobf adds ACC_SUPER as that was the observed behaviour of compilers when compiling anonymous inner classes.
-            // However, asm-util's ClassCheckAdapter does not tolerate that flag on anonymous inner classes, so we shall strip it.
-            // In the end, this should have absolutely no impact on runtime 90% of the time (the other 10% are when the
-            // ClassCheckAdapter is being used by SLL in case a class failed to transform).
-            for (ClassNode node : deobfuscator.getClassNodesDirectly()) {
-                for (InnerClassNode icn : node.innerClasses) {
-                    icn.access &= ~Opcodes.ACC_SUPER;
+
+                if (tieredIndex != null) {
+                    tieredIndex.verifyUntouched();
                 }
-            }
 
-            long startIntermediarisation = System.nanoTime();
-            this.getLogger().debug("Deobfuscated classes in " + (startIntermediarisation - startDeobf) / 1_000_000L + " ms.");
-
-            if (this.getWithSLDeobfRemapping().get()) {
-                IntermediaryGenerator generator = new IntermediaryGenerator(intermediaryMappingsFile, null, deobfuscator.getClassNodesDirectly());
-                generator.useAlternateClassNaming(!Boolean.getBoolean("de.geolykt.starplane.oldnames"));
-                generator.remapClassesV2(true);
-                deobfuscator.fixSwitchMaps();
-                generator.doProposeEnumFieldsV2();
-                generator.remapGetters();
-                generator.deobfuscate();
-                this.getLogger().info("Task '{}' computed sldeobf intermediaries in {} ms.", this.getPath(), (System.nanoTime() - startIntermediarisation) / 1_000_000L);
+                if (stageCache != null && stageCacheKey != null) {
+                    try {
+                        stageCache.store(stageCacheKey, deobfuscator.getClassNodesDirectly(), this.getWithSLDeobfRemapping().get() ? intermediaryMappingsFile : null);
+                    } catch (IOException e) {
+                        this.getLogger().warn("Task '{}' is unable to write stage cache entry {}.", this.getPath(), stageCacheKey, e);
+                    }
+                }
             }
 
             if (!this.getWithAutodeobf().get()) {
@@ -180,7 +259,12 @@ public abstract class DeobfuscateGameTask extends ConventionTask {
                 this.getLogger().info("Task '{}' uses autodeobf version {}", this.getPath(), deobf.getVersion());
                 try (Writer writer = Files.newBufferedWriter(this.getSpStarmapMappings().get().getAsFile().toPath(), StandardOpenOption.CREATE)) {
                     writer.write("v1\tintermediary\tnamed\n");
-                    deobf.runAll(writer);
+                    ForkJoinPool pool = new ForkJoinPool(Math.max(1, this.getDeobfuscationThreads().get()));
+                    try {
+                        deobf.runAll(writer, pool);
+                    } finally {
+                        pool.shutdownNow();
+                    }
                     for (Map.Entry<String, String> e : remapper.fixICNNames(new StringBuilder()).entrySet()) {
                         writer.write("CLASS\t");
                         writer.write(Objects.requireNonNull(e.getKey()));
@@ -204,11 +288,22 @@ public abstract class DeobfuscateGameTask extends ConventionTask {
             }
         }
 
-        try (OutputStream os = Files.newOutputStream(this.getOutputJar().get().getAsFile().toPath())) {
-            deobfuscator.write(os, cleanGalimJar);
+        List<ClassNode> outputNodes = deobfuscator.getClassNodesDirectly();
+        Set<String> passthroughClassEntries = Collections.emptySet();
+        if (tieredIndex != null) {
+            tieredIndex.verifyUntouched();
+            outputNodes = tieredIndex.getFullyLoadedNodes(outputNodes);
+            passthroughClassEntries = tieredIndex.getPassthroughClassEntries();
+        }
+
+        long startWrite = System.nanoTime();
+        try {
+            ParallelJarWriter jarWriter = new ParallelJarWriter(this.getDeobfuscationThreads().get(), this.getPassthroughResources().get());
+            jarWriter.write(outputNodes, passthroughClassEntries, cleanGalimJar, this.getOutputJar().get().getAsFile().toPath());
         } catch (IOException e) {
             throw new UncheckedIOException("Failed writing output jar", e);
         }
+        this.getLogger().info("Wrote output jar in " + (System.nanoTime() - startWrite) / 1_000_000L + " ms.");
     }
 
     @Input
@@ -219,9 +314,17 @@ public abstract class DeobfuscateGameTask extends ConventionTask {
     @PathSensitive(PathSensitivity.RELATIVE)
     public abstract RegularFileProperty getInputJar();
 
+    @Internal("Only affects how fast the task runs, not what it produces")
+    @Optional
+    public abstract Property<Integer> getDeobfuscationThreads();
+
     @Inject
     protected abstract ProjectLayout getLayout();
 
+    @Input
+    @Optional
+    public abstract ListProperty<String> getLibraryPackages();
+
     @Internal("Transitively affects other output locations. Not used directly.")
     public abstract DirectoryProperty getOutputDirectory();
 
@@ -229,6 +332,10 @@ public abstract class DeobfuscateGameTask extends ConventionTask {
     @Optional
     public abstract RegularFileProperty getOutputJar();
 
+    @Input
+    @Optional
+    public abstract Property<Boolean> getPassthroughResources();
+
     @Inject
     protected abstract ProviderFactory getProviders();
 
@@ -240,6 +347,14 @@ public abstract class DeobfuscateGameTask extends ConventionTask {
     @Optional
     public abstract RegularFileProperty getSpStarmapMappings();
 
+    @Internal("Only used to speed up subsequent executions, does not affect the outputs")
+    @Optional
+    public abstract DirectoryProperty getStageCacheDirectory();
+
+    @Internal("Only used to speed up subsequent executions, does not affect the outputs")
+    @Optional
+    public abstract Property<Boolean> getUseStageCache();
+
     @Input
     @Optional
     public abstract Property<Boolean> getWithAutodeobf();